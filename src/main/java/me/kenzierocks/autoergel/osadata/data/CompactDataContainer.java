@@ -0,0 +1,44 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data;
+
+/**
+ * A {@link MemoryDataContainer} whose views store integer, long and double
+ * values, and lists of them, in primitive form instead of boxing them. Suited
+ * to item data, which is mostly small numeric values.
+ *
+ * <p>
+ * Values read back through {@link #get(DataQuery)} and the typed getters are
+ * boxed on the way out; use {@link #getIntArray(DataQuery)} and its siblings
+ * to read numeric lists without boxing.
+ * </p>
+ */
+public class CompactDataContainer extends MemoryDataContainer {
+
+    public CompactDataContainer() {
+        super(new CompactDataMap());
+    }
+
+}
@@ -0,0 +1,530 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Insertion-ordered map used as the storage of a
+ * {@link CompactDataContainer}. Integer, long and double values are held in a
+ * {@code long[]} instead of being boxed, and lists made up only of one of
+ * those types are packed into a primitive array. Reading a number boxes it
+ * again; a packed list is kept as a read-only view such as {@link IntList},
+ * which is created once and can hand out the values without boxing.
+ *
+ * <p>
+ * Entries from {@link #entrySet()} write through to the map, as with
+ * {@link java.util.HashMap}.
+ * </p>
+ *
+ * <p>
+ * Entries live in parallel arrays in insertion order. Lookups go through an
+ * open-addressing table of entry positions; removed entries are left as holes
+ * until the next resize compacts them.
+ * </p>
+ */
+final class CompactDataMap extends AbstractMap<String, Object> {
+
+    private static final byte REF = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // a null key marks a removed entry
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private byte[] tags = new byte[INITIAL_CAPACITY];
+    private long[] prims = new long[INITIAL_CAPACITY];
+    private Object[] refs = new Object[INITIAL_CAPACITY];
+    // entry position + 1, 0 for a free slot; twice the entry capacity
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int end;
+    private int size;
+    private int modCount;
+
+    private static int slot(Object key, int mask) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int find(Object key) {
+        int mask = this.table.length - 1;
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            int entry = this.table[i] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            if (key.equals(this.keys[entry])) {
+                return entry;
+            }
+        }
+    }
+
+    private void resize() {
+        int capacity = this.keys.length;
+        if (this.size * 2 > capacity) {
+            capacity *= 2;
+        }
+        String[] newKeys = new String[capacity];
+        byte[] newTags = new byte[capacity];
+        long[] newPrims = new long[capacity];
+        Object[] newRefs = new Object[capacity];
+        int[] newTable = new int[capacity * 2];
+        int mask = newTable.length - 1;
+        int n = 0;
+        for (int i = 0; i < this.end; i++) {
+            String key = this.keys[i];
+            if (key == null) {
+                continue;
+            }
+            newKeys[n] = key;
+            newTags[n] = this.tags[i];
+            newPrims[n] = this.prims[i];
+            newRefs[n] = this.refs[i];
+            int s = slot(key, mask);
+            while (newTable[s] != 0) {
+                s = (s + 1) & mask;
+            }
+            newTable[s] = ++n;
+        }
+        this.keys = newKeys;
+        this.tags = newTags;
+        this.prims = newPrims;
+        this.refs = newRefs;
+        this.table = newTable;
+        this.end = n;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return key != null && find(key) >= 0;
+    }
+
+    @Override
+    @Nullable
+    public Object get(@Nullable Object key) {
+        if (key == null) {
+            return null;
+        }
+        int entry = find(key);
+        return entry < 0 ? null : load(entry);
+    }
+
+    @Override
+    @Nullable
+    public Object put(String key, Object value) {
+        int entry = find(key);
+        Object old = null;
+        if (entry >= 0) {
+            old = load(entry);
+        } else {
+            if (this.end == this.keys.length) {
+                resize();
+            }
+            entry = this.end++;
+            this.keys[entry] = key;
+            int mask = this.table.length - 1;
+            int s = slot(key, mask);
+            while (this.table[s] != 0) {
+                s = (s + 1) & mask;
+            }
+            this.table[s] = entry + 1;
+            this.size++;
+            this.modCount++;
+        }
+        store(entry, value);
+        return old;
+    }
+
+    @Override
+    @Nullable
+    public Object remove(@Nullable Object key) {
+        if (key == null) {
+            return null;
+        }
+        int entry = find(key);
+        if (entry < 0) {
+            return null;
+        }
+        Object old = load(entry);
+        removeEntry(entry);
+        return old;
+    }
+
+    private void removeEntry(int entry) {
+        // the table slot keeps pointing at the hole so probing continues
+        // past it
+        this.keys[entry] = null;
+        this.tags[entry] = 0;
+        this.refs[entry] = null;
+        this.size--;
+        this.modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.keys, 0, this.end, null);
+        Arrays.fill(this.tags, 0, this.end, (byte) 0);
+        Arrays.fill(this.refs, 0, this.end, null);
+        Arrays.fill(this.table, 0);
+        this.end = 0;
+        this.size = 0;
+        this.modCount++;
+    }
+
+    private void store(int entry, Object value) {
+        Object ref = null;
+        byte tag;
+        long prim = 0;
+        if (value instanceof Integer) {
+            tag = INT;
+            prim = (Integer) value;
+        } else if (value instanceof Long) {
+            tag = LONG;
+            prim = (Long) value;
+        } else if (value instanceof Double) {
+            tag = DOUBLE;
+            prim = Double.doubleToRawLongBits((Double) value);
+        } else if (value instanceof List && !((List<?>) value).isEmpty()) {
+            tag = REF;
+            ref = pack((List<?>) value);
+            if (ref == null) {
+                ref = value;
+            }
+        } else {
+            tag = REF;
+            ref = value;
+        }
+        this.tags[entry] = tag;
+        this.prims[entry] = prim;
+        this.refs[entry] = ref;
+    }
+
+    /**
+     * Packs a list whose elements are all of the same boxed type into a
+     * primitive array.
+     *
+     * @return A view of the array, or {@code null} if the list can't be
+     *         packed
+     */
+    @Nullable
+    private static Object pack(List<?> list) {
+        int size = list.size();
+        Class<?> type = list.get(0).getClass();
+        for (Object element : list) {
+            if (element.getClass() != type) {
+                return null;
+            }
+        }
+        if (type == Integer.class) {
+            int[] array = new int[size];
+            for (int i = 0; i < size; i++) {
+                array[i] = (Integer) list.get(i);
+            }
+            return new IntList(array);
+        } else if (type == Long.class) {
+            long[] array = new long[size];
+            for (int i = 0; i < size; i++) {
+                array[i] = (Long) list.get(i);
+            }
+            return new LongList(array);
+        } else if (type == Double.class) {
+            double[] array = new double[size];
+            for (int i = 0; i < size; i++) {
+                array[i] = (Double) list.get(i);
+            }
+            return new DoubleList(array);
+        }
+        return null;
+    }
+
+    private Object load(int entry) {
+        switch (this.tags[entry]) {
+            case INT:
+                return (int) this.prims[entry];
+            case LONG:
+                return this.prims[entry];
+            case DOUBLE:
+                return Double.longBitsToDouble(this.prims[entry]);
+            default:
+                return this.refs[entry];
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        int expectedModCount = this.modCount;
+        for (int i = 0; i < this.end; i++) {
+            if (this.keys[i] != null) {
+                action.accept(this.keys[i], load(i));
+            }
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new EntrySet();
+    }
+
+    private final class EntrySet
+            extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return CompactDataMap.this.size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+    }
+
+    private final class EntryIterator
+            implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = skipHoles(0);
+        private int last = -1;
+        private int expectedModCount = CompactDataMap.this.modCount;
+
+        private int skipHoles(int from) {
+            int i = from;
+            while (i < CompactDataMap.this.end
+                    && CompactDataMap.this.keys[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        private void checkModCount() {
+            if (CompactDataMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < CompactDataMap.this.end;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            checkModCount();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next = skipHoles(this.next + 1);
+            return new Entry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            checkModCount();
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            removeEntry(this.last);
+            this.last = -1;
+            this.expectedModCount = CompactDataMap.this.modCount;
+        }
+
+    }
+
+    /**
+     * Reads and writes its entry in place. If the entry moves when the map
+     * is resized, it is found again by key.
+     */
+    private final class Entry implements Map.Entry<String, Object> {
+
+        private final String key;
+        private int position;
+
+        Entry(int position) {
+            this.key = CompactDataMap.this.keys[position];
+            this.position = position;
+        }
+
+        private int position() {
+            if (CompactDataMap.this.keys[this.position] != this.key) {
+                int moved = find(this.key);
+                if (moved < 0) {
+                    throw new IllegalStateException(
+                            "entry " + this.key + " was removed");
+                }
+                this.position = moved;
+            }
+            return this.position;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public Object getValue() {
+            return load(position());
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            int position = position();
+            Object old = load(position);
+            store(position, value);
+            return old;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return this.key.equals(other.getKey())
+                    && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + getValue();
+        }
+
+    }
+
+    /**
+     * Read-only list view of a packed {@code int[]}.
+     */
+    static final class IntList extends AbstractList<Integer>
+            implements RandomAccess {
+
+        private final int[] values;
+
+        IntList(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public int size() {
+            return this.values.length;
+        }
+
+        int[] toIntArray() {
+            return this.values.clone();
+        }
+
+    }
+
+    /**
+     * Read-only list view of a packed {@code long[]}.
+     */
+    static final class LongList extends AbstractList<Long>
+            implements RandomAccess {
+
+        private final long[] values;
+
+        LongList(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Long get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public int size() {
+            return this.values.length;
+        }
+
+        long[] toLongArray() {
+            return this.values.clone();
+        }
+
+    }
+
+    /**
+     * Read-only list view of a packed {@code double[]}.
+     */
+    static final class DoubleList extends AbstractList<Double>
+            implements RandomAccess {
+
+        private final double[] values;
+
+        DoubleList(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Double get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public int size() {
+            return this.values.length;
+        }
+
+        double[] toDoubleArray() {
+            return this.values.clone();
+        }
+
+    }
+
+}
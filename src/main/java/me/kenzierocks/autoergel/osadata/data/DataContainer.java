@@ -39,6 +39,11 @@ public interface DataContainer extends DataView {
     @Override
     <E> DataContainer set(Key<? extends BaseValue<E>> key, E value);
 
+    @Override
+    default DataContainer setOwned(DataQuery path, Object array) {
+        return set(path, array);
+    }
+
     @Override
     DataContainer remove(DataQuery path);
 }
@@ -24,53 +24,75 @@
  */
 package me.kenzierocks.autoergel.osadata.data;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import java.util.List;
-import java.util.regex.Pattern;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Represents a query that can be done on views. Queries do not depend on their
  * separator, it is just a way to construct them.
+ * 
+ * <p>
+ * Queries are immutable and cache everything views need to walk them: the hash
+ * code, the {@link #getHead() head} and {@link #getTail() tail}, and the
+ * {@link #getQueryParts() query parts}. Single-part queries, which is what
+ * views decompose every path into, are {@link #intern() interned}.
+ * </p>
  */
 public final class DataQuery {
 
-    private static final DataQuery EMPTY = new DataQuery();
+    private static final Interner<DataQuery> INTERNER =
+            Interners.newWeakInterner();
 
-    /**
-     * The parts that make up this query.
-     */
-    private final ImmutableList<String> parts;
+    private static final DataQuery EMPTY = new DataQuery(ImmutableList.of());
 
     /**
-     * Constructs a query using the given separator character and path.
-     *
-     * <p>
-     * As an example, {@code new DataQuery('/', "a/b/c")} and
-     * {@code new DataQuery('.', "a.b.c")} represent the same path but are
-     * constructed using different separators.
-     * </p>
-     *
-     * @param separator
-     *            The separator
-     * @param path
-     *            The path
+     * Splits like {@code path.split(Pattern.quote(separator))}, without the
+     * regular expression.
      */
-    private DataQuery(char separator, String path) {
-        this(path.split(Pattern.quote(String.valueOf(separator))));
+    private static ImmutableList<String> split(char separator, String path) {
+        if (path.isEmpty()) {
+            return ImmutableList.of(path);
+        }
+        ImmutableList.Builder<String> parts = ImmutableList.builder();
+        int start = 0;
+        // trailing empty parts are dropped, as String.split does
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == separator) {
+            end--;
+        }
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == separator) {
+                parts.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (end > 0) {
+            parts.add(path.substring(start, end));
+        }
+        return parts.build();
+    }
+
+    private static DataQuery create(ImmutableList<String> parts) {
+        if (parts.isEmpty()) {
+            return EMPTY;
+        }
+        DataQuery query = new DataQuery(parts);
+        return parts.size() == 1 ? query.intern() : query;
     }
 
     /**
-     * Constructs a query using the given parts.
-     *
-     * @param parts
-     *            The parts
+     * The parts that make up this query.
      */
-    private DataQuery(String... parts) {
-        this.parts = ImmutableList.copyOf(parts);
-    }
+    private final ImmutableList<String> parts;
+    private final int hash;
+    private transient volatile ImmutableList<DataQuery> queryParts;
+    private transient volatile DataQuery tail;
 
     /**
      * Constructs a query using the given parts.
@@ -78,8 +100,9 @@ public final class DataQuery {
      * @param parts
      *            The parts
      */
-    private DataQuery(List<String> parts) {
-        this.parts = ImmutableList.copyOf(parts);
+    private DataQuery(ImmutableList<String> parts) {
+        this.parts = parts;
+        this.hash = parts.hashCode();
     }
 
     /**
@@ -108,7 +131,7 @@ public final class DataQuery {
      * @return The newly constructed {@link DataQuery}
      */
     public static DataQuery of(char separator, String path) {
-        return new DataQuery(separator, path);
+        return create(split(separator, path));
     }
 
     /**
@@ -119,10 +142,7 @@ public final class DataQuery {
      * @return The newly constructed {@link DataQuery}
      */
     public static DataQuery of(String... parts) {
-        if (parts.length == 0) {
-            return DataQuery.EMPTY;
-        }
-        return new DataQuery(parts);
+        return create(ImmutableList.copyOf(parts));
     }
 
     /**
@@ -133,10 +153,17 @@ public final class DataQuery {
      * @return The newly constructed {@link DataQuery}
      */
     public static DataQuery of(List<String> parts) {
-        if (parts.isEmpty()) {
-            return DataQuery.EMPTY;
-        }
-        return new DataQuery(parts);
+        return create(ImmutableList.copyOf(parts));
+    }
+
+    /**
+     * Returns the canonical instance of this query. Interned queries are only
+     * weakly referenced by the table.
+     *
+     * @return The canonical query equal to this one
+     */
+    public DataQuery intern() {
+        return this.parts.isEmpty() ? EMPTY : INTERNER.intern(this);
     }
 
     /**
@@ -148,6 +175,44 @@ public final class DataQuery {
         return this.parts;
     }
 
+    /**
+     * Gets the number of parts in this query.
+     *
+     * @return The depth of this query
+     */
+    public int getDepth() {
+        return this.parts.size();
+    }
+
+    /**
+     * Gets the first part of this query.
+     *
+     * @return The first part
+     * @throws IllegalStateException
+     *             If this query is empty
+     */
+    public String getHead() {
+        checkState(!this.parts.isEmpty(), "empty query has no head");
+        return this.parts.get(0);
+    }
+
+    /**
+     * Gets the query made up of all parts of this query but the first. The
+     * tail of a query with less than two parts is {@link #of() empty}.
+     *
+     * @return The tail of this query
+     */
+    public DataQuery getTail() {
+        DataQuery tail = this.tail;
+        if (tail == null) {
+            // racing threads build equal tails, any of them will do
+            tail = this.parts.size() <= 1 ? EMPTY
+                    : create(this.parts.subList(1, this.parts.size()));
+            this.tail = tail;
+        }
+        return tail;
+    }
+
     /**
      * Returns a new query that is made up of this query's parts followed by the
      * given query's parts.
@@ -157,6 +222,12 @@ public final class DataQuery {
      * @return The constructed query
      */
     public DataQuery then(DataQuery that) {
+        if (that.parts.isEmpty()) {
+            return this;
+        }
+        if (this.parts.isEmpty()) {
+            return that;
+        }
         ImmutableList.Builder<String> builder = new ImmutableList.Builder<>();
 
         builder.addAll(this.parts);
@@ -172,14 +243,23 @@ public final class DataQuery {
      * @return The constructed queries
      */
     public List<DataQuery> getQueryParts() {
-        ImmutableList.Builder<DataQuery> builder =
-                new ImmutableList.Builder<>();
+        ImmutableList<DataQuery> queryParts = this.queryParts;
+        if (queryParts == null) {
+            if (this.parts.size() == 1) {
+                // this query is interned already
+                queryParts = ImmutableList.of(intern());
+            } else {
+                ImmutableList.Builder<DataQuery> builder =
+                        new ImmutableList.Builder<>();
 
-        for (String part : getParts()) {
-            builder.add(new DataQuery(part));
+                for (String part : getParts()) {
+                    builder.add(create(ImmutableList.of(part)));
+                }
+                queryParts = builder.build();
+            }
+            this.queryParts = queryParts;
         }
-
-        return builder.build();
+        return queryParts;
     }
 
     /**
@@ -190,6 +270,9 @@ public final class DataQuery {
      * @return This query as a string
      */
     public String asString(String separator) {
+        if (this.parts.size() == 1) {
+            return this.parts.get(0);
+        }
         return Joiner.on(separator).join(this.parts);
     }
 
@@ -211,7 +294,7 @@ public final class DataQuery {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.parts);
+        return this.hash;
     }
 
     @Override
@@ -223,6 +306,6 @@ public final class DataQuery {
             return false;
         }
         final DataQuery other = (DataQuery) obj;
-        return Objects.equal(this.parts, other.parts);
+        return this.hash == other.hash && this.parts.equals(other.parts);
     }
 }
@@ -24,10 +24,21 @@
  */
 package me.kenzierocks.autoergel.osadata.data;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
+
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 
 import me.kenzierocks.autoergel.osadata.data.key.Key;
 import me.kenzierocks.autoergel.osadata.data.value.BaseValue;
@@ -140,6 +151,30 @@ public interface DataView {
      */
     Map<DataQuery, Object> getValues(boolean deep);
 
+    /**
+     * Performs the given action on each value held directly by this
+     * {@link DataView}, in order, along with the name it is held under.
+     *
+     * <p>
+     * Unlike {@link #getValues(boolean)}, no map is built: child
+     * {@link DataView}s are passed as they are, and arrays are passed without
+     * being copied, so the action must not modify them.
+     * </p>
+     *
+     * <p>
+     * The default goes through {@link #getKeys(boolean)} and
+     * {@link #get(DataQuery)}, so it may pass copies.
+     * </p>
+     *
+     * @param action
+     *            The action to perform on each name and value
+     */
+    default void forEachValue(BiConsumer<String, Object> action) {
+        for (DataQuery key : getKeys(false)) {
+            get(key).ifPresent(value -> action.accept(key.getHead(), value));
+        }
+    }
+
     /**
      * Returns whether this {@link DataView} contains the given path.
      *
@@ -197,6 +232,30 @@ public interface DataView {
      */
     <E> DataView set(Key<? extends BaseValue<E>> key, E value);
 
+    /**
+     * Sets the given array according to the given path relative to this
+     * {@link DataView}'s path, taking ownership of it.
+     *
+     * <p>
+     * Unlike {@link #set(DataQuery, Object)}, the array is stored without a
+     * defensive copy. The caller must not modify it afterwards.
+     * </p>
+     *
+     * <p>
+     * The default stores the array with {@link #set(DataQuery, Object)}, so
+     * it may still be copied.
+     * </p>
+     *
+     * @param path
+     *            The path of the array to set
+     * @param array
+     *            The array, which must not be modified after this call
+     * @return This view, for chaining
+     */
+    default DataView setOwned(DataQuery path, Object array) {
+        return set(path, array);
+    }
+
     /**
      * Removes the data associated to the given path relative to this
      * {@link DataView}'s path.
@@ -518,6 +577,201 @@ public interface DataView {
      */
     Optional<List<DataView>> getViewList(DataQuery path);
 
+    /**
+     * Gets the values of the {@code int[]} or {@link List} of numbers by
+     * path as a new {@code int[]}, if available.
+     *
+     * <p>
+     * List elements that can't be coerced to {@code int} are skipped, as in
+     * {@link #getIntegerList(DataQuery)}. Lists held in packed form by a
+     * {@link CompactDataContainer} are copied without boxing.
+     * </p>
+     *
+     * <p>
+     * The default copies the array returned by {@link #get(DataQuery)}, or
+     * else converts {@link #getIntegerList(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The array, if available
+     */
+    default Optional<int[]> getIntArray(DataQuery path) {
+        Optional<Object> value = get(path);
+        if (value.isPresent() && value.get() instanceof int[]) {
+            return Optional.of(((int[]) value.get()).clone());
+        }
+        return getIntegerList(path).map(Ints::toArray);
+    }
+
+    /**
+     * Gets the values of the {@code long[]} or {@link List} of numbers by
+     * path as a new {@code long[]}, if available.
+     *
+     * <p>
+     * List elements that can't be coerced to {@code long} are skipped, as in
+     * {@link #getLongList(DataQuery)}. Lists held in packed form by a
+     * {@link CompactDataContainer} are copied without boxing.
+     * </p>
+     *
+     * <p>
+     * The default copies the array returned by {@link #get(DataQuery)}, or
+     * else converts {@link #getLongList(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The array, if available
+     */
+    default Optional<long[]> getLongArray(DataQuery path) {
+        Optional<Object> value = get(path);
+        if (value.isPresent() && value.get() instanceof long[]) {
+            return Optional.of(((long[]) value.get()).clone());
+        }
+        return getLongList(path).map(Longs::toArray);
+    }
+
+    /**
+     * Gets the values of the {@code double[]} or {@link List} of numbers by
+     * path as a new {@code double[]}, if available.
+     *
+     * <p>
+     * List elements that can't be coerced to {@code double} are skipped, as in
+     * {@link #getDoubleList(DataQuery)}. Lists held in packed form by a
+     * {@link CompactDataContainer} are copied without boxing.
+     * </p>
+     *
+     * <p>
+     * The default copies the array returned by {@link #get(DataQuery)}, or
+     * else converts {@link #getDoubleList(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The array, if available
+     */
+    default Optional<double[]> getDoubleArray(DataQuery path) {
+        Optional<Object> value = get(path);
+        if (value.isPresent() && value.get() instanceof double[]) {
+            return Optional.of(((double[]) value.get()).clone());
+        }
+        return getDoubleList(path).map(Doubles::toArray);
+    }
+
+    /**
+     * Gets a read-only {@link ByteBuffer} view of the {@code byte[]} by
+     * path, if available.
+     *
+     * <p>
+     * Unlike {@link #get(DataQuery)}, the stored array is not copied. The
+     * returned buffer is read-only and shares the array held by this view.
+     * </p>
+     *
+     * <p>
+     * The default wraps the array returned by {@link #get(DataQuery)}, which
+     * may be a copy; views that hold arrays should override it.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<ByteBuffer> getByteBuffer(DataQuery path) {
+        return get(path).filter(byte[].class::isInstance)
+                .map(array -> ByteBuffer.wrap((byte[]) array)
+                        .asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only {@link ShortBuffer} view of the {@code short[]} by
+     * path, if available.
+     *
+     * <p>
+     * The stored array is not copied, see {@link #getByteBuffer(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<ShortBuffer> getShortBuffer(DataQuery path) {
+        return get(path).filter(short[].class::isInstance)
+                .map(array -> ShortBuffer.wrap((short[]) array)
+                        .asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only {@link IntBuffer} view of the {@code int[]} by
+     * path, if available.
+     *
+     * <p>
+     * The stored array is not copied, see {@link #getByteBuffer(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<IntBuffer> getIntBuffer(DataQuery path) {
+        return get(path).filter(int[].class::isInstance)
+                .map(array -> IntBuffer.wrap((int[]) array)
+                        .asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only {@link LongBuffer} view of the {@code long[]} by
+     * path, if available.
+     *
+     * <p>
+     * The stored array is not copied, see {@link #getByteBuffer(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<LongBuffer> getLongBuffer(DataQuery path) {
+        return get(path).filter(long[].class::isInstance)
+                .map(array -> LongBuffer.wrap((long[]) array)
+                        .asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only {@link FloatBuffer} view of the {@code float[]} by
+     * path, if available.
+     *
+     * <p>
+     * The stored array is not copied, see {@link #getByteBuffer(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<FloatBuffer> getFloatBuffer(DataQuery path) {
+        return get(path).filter(float[].class::isInstance)
+                .map(array -> FloatBuffer.wrap((float[]) array)
+                        .asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only {@link DoubleBuffer} view of the {@code double[]} by
+     * path, if available.
+     *
+     * <p>
+     * The stored array is not copied, see {@link #getByteBuffer(DataQuery)}.
+     * </p>
+     *
+     * @param path
+     *            The path of the value to get
+     * @return The buffer, if available
+     */
+    default Optional<DoubleBuffer> getDoubleBuffer(DataQuery path) {
+        return get(path).filter(double[].class::isInstance)
+                .map(array -> DoubleBuffer.wrap((double[]) array)
+                        .asReadOnlyBuffer());
+    }
+
     /**
      * Gets the {@link DataSerializable} object by path, if available.
      *
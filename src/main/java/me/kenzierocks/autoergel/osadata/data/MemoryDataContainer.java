@@ -26,6 +26,7 @@ package me.kenzierocks.autoergel.osadata.data;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Map;
 import java.util.Optional;
 
 import me.kenzierocks.autoergel.osadata.data.key.Key;
@@ -39,6 +40,16 @@ import me.kenzierocks.autoergel.osadata.data.value.BaseValue;
 public class MemoryDataContainer extends MemoryDataView
         implements DataContainer {
 
+    public MemoryDataContainer() {
+    }
+
+    /**
+     * Constructs a container backed by the given storage.
+     */
+    protected MemoryDataContainer(Map<String, Object> storage) {
+        super(storage);
+    }
+
     @Override
     public Optional<DataView> getParent() {
         return Optional.empty();
@@ -59,6 +70,11 @@ public class MemoryDataContainer extends MemoryDataView
         return set(checkNotNull(key).getQuery(), value);
     }
 
+    @Override
+    public DataContainer setOwned(DataQuery path, Object array) {
+        return (DataContainer) super.setOwned(path, array);
+    }
+
     @Override
     public DataContainer remove(DataQuery path) {
         return (DataContainer) super.remove(path);
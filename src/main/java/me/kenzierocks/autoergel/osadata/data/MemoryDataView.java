@@ -29,6 +29,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static me.kenzierocks.autoergel.osadata.data.DataQuery.of;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nullable;
 
@@ -58,14 +65,23 @@ import me.kenzierocks.autoergel.recipe.AutoErgel;
  */
 public class MemoryDataView implements DataView {
 
-    protected final Map<String, Object> map = Maps.newLinkedHashMap();
+    protected final Map<String, Object> map;
     private final DataContainer container;
     private final DataView parent;
     private final DataQuery path;
 
     protected MemoryDataView() {
+        this(Maps.newLinkedHashMap());
+    }
+
+    /**
+     * Constructs a root view backed by the given storage. Child views use the
+     * same kind of storage.
+     */
+    protected MemoryDataView(Map<String, Object> storage) {
         checkState(this instanceof DataContainer,
                 "Cannot construct a root MemoryDataView without a container!");
+        this.map = checkNotNull(storage, "storage");
         this.path = of();
         this.parent = this;
         this.container = (DataContainer) this;
@@ -77,6 +93,19 @@ public class MemoryDataView implements DataView {
         this.parent = parent;
         this.container = parent.getContainer();
         this.path = parent.getCurrentPath().then(path);
+        this.map = parent instanceof MemoryDataView
+                ? ((MemoryDataView) parent).newStorage()
+                : Maps.newLinkedHashMap();
+    }
+
+    private Map<String, Object> newStorage() {
+        return this.map instanceof CompactDataMap ? new CompactDataMap()
+                : Maps.newLinkedHashMap();
+    }
+
+    private MemoryDataContainer newContainer() {
+        return this.map instanceof CompactDataMap ? new CompactDataContainer()
+                : new MemoryDataContainer();
     }
 
     @Override
@@ -100,6 +129,11 @@ public class MemoryDataView implements DataView {
         return Optional.ofNullable(this.parent);
     }
 
+    @Override
+    public void forEachValue(BiConsumer<String, Object> action) {
+        this.map.forEach(checkNotNull(action, "action"));
+    }
+
     @Override
     public Set<DataQuery> getKeys(boolean deep) {
         ImmutableSet.Builder<DataQuery> builder = ImmutableSet.builder();
@@ -129,33 +163,48 @@ public class MemoryDataView implements DataView {
             if (value instanceof DataView) {
                 builder.put(query, ((DataView) value).getValues(deep));
             } else {
-                builder.put(query, get(query).get());
+                builder.put(query, value);
             }
         }
         return builder.build();
     }
 
+    /**
+     * Walks down the child views named by the first {@code end} parts of
+     * {@code path}, without building sub-queries.
+     * 
+     * @param create
+     *            - {@code true} to create missing views on the way, replacing
+     *            values that are not views
+     * @return The view reached, or {@code null} if a part doesn't name a
+     *         child view
+     */
+    @Nullable
+    private MemoryDataView walk(DataQuery path, int end, boolean create) {
+        List<String> parts = path.getParts();
+        MemoryDataView view = this;
+        for (int i = 0; i < end; i++) {
+            String key = parts.get(i);
+            Object child = view.map.get(key);
+            if (!(child instanceof MemoryDataView)) {
+                if (!create) {
+                    return null;
+                }
+                child = new MemoryDataView(view, path.getQueryParts().get(i));
+                view.map.put(key, child);
+            }
+            view = (MemoryDataView) child;
+        }
+        return view;
+    }
+
     @Override
     public final boolean contains(DataQuery path) {
         checkNotNull(path, "path");
-        List<DataQuery> queryParts = path.getQueryParts();
-
-        if (queryParts.size() == 1) {
-            String key = queryParts.get(0).getParts().get(0);
-            return this.map.containsKey(key);
-        } else {
-            DataQuery subQuery = queryParts.get(0);
-            Optional<DataView> subViewOptional = this.getUnsafeView(subQuery);
-            if (!subViewOptional.isPresent()) {
-                return false;
-            }
-            List<String> subParts =
-                    Lists.newArrayListWithCapacity(queryParts.size() - 1);
-            for (int i = 1; i < queryParts.size(); i++) {
-                subParts.add(queryParts.get(i).asString("."));
-            }
-            return subViewOptional.get().contains(of(subParts));
-        }
+        int last = path.getDepth() - 1;
+        checkArgument(last >= 0, "The size of the query must be at least 1");
+        MemoryDataView view = walk(path, last, false);
+        return view != null && view.map.containsKey(path.getParts().get(last));
     }
 
     @Override
@@ -181,60 +230,44 @@ public class MemoryDataView implements DataView {
     @Override
     public Optional<Object> get(DataQuery path) {
         checkNotNull(path, "path");
-        List<DataQuery> queryParts = path.getQueryParts();
-
-        int sz = queryParts.size();
+        int last = path.getDepth() - 1;
 
-        if (sz == 0) {
+        if (last < 0) {
             return Optional.<Object> of(this);
         }
 
-        if (sz == 1) {
-            String key = queryParts.get(0).getParts().get(0);
-            if (this.map.containsKey(key)) {
-                final Object object = this.map.get(key);
-                if (object.getClass().isArray()) {
-                    if (object instanceof byte[]) {
-                        return Optional.<Object> of(((byte[]) object).clone());
-                    } else if (object instanceof short[]) {
-                        return Optional.<Object> of(((short[]) object).clone());
-                    } else if (object instanceof int[]) {
-                        return Optional.<Object> of(((int[]) object).clone());
-                    } else if (object instanceof long[]) {
-                        return Optional.<Object> of(((long[]) object).clone());
-                    } else if (object instanceof float[]) {
-                        return Optional.<Object> of(((float[]) object).clone());
-                    } else if (object instanceof double[]) {
-                        return Optional
-                                .<Object> of(((double[]) object).clone());
-                    } else if (object instanceof boolean[]) {
-                        return Optional
-                                .<Object> of(((boolean[]) object).clone());
-                    } else {
-                        return Optional
-                                .<Object> of(((Object[]) object).clone());
-                    }
-                }
-                return Optional.of(this.map.get(key));
-            } else {
-                return Optional.empty();
-            }
+        MemoryDataView view = walk(path, last, false);
+        if (view == null) {
+            return Optional.empty();
         }
-        DataQuery subQuery = queryParts.get(0);
-        Optional<DataView> subViewOptional = this.getUnsafeView(subQuery);
-        DataView subView;
-        if (!subViewOptional.isPresent()) {
+        return view.getLocal(path.getParts().get(last));
+    }
+
+    private Optional<Object> getLocal(String key) {
+        final Object object = this.map.get(key);
+        if (object == null) {
             return Optional.empty();
-        } else {
-            subView = subViewOptional.get();
         }
-        List<String> subParts =
-                Lists.newArrayListWithCapacity(queryParts.size() - 1);
-        for (int i = 1; i < queryParts.size(); i++) {
-            subParts.add(queryParts.get(i).asString("."));
+        if (object.getClass().isArray()) {
+            if (object instanceof byte[]) {
+                return Optional.<Object> of(((byte[]) object).clone());
+            } else if (object instanceof short[]) {
+                return Optional.<Object> of(((short[]) object).clone());
+            } else if (object instanceof int[]) {
+                return Optional.<Object> of(((int[]) object).clone());
+            } else if (object instanceof long[]) {
+                return Optional.<Object> of(((long[]) object).clone());
+            } else if (object instanceof float[]) {
+                return Optional.<Object> of(((float[]) object).clone());
+            } else if (object instanceof double[]) {
+                return Optional.<Object> of(((double[]) object).clone());
+            } else if (object instanceof boolean[]) {
+                return Optional.<Object> of(((boolean[]) object).clone());
+            } else {
+                return Optional.<Object> of(((Object[]) object).clone());
+            }
         }
-        return subView.get(of(subParts));
-
+        return Optional.of(object);
     }
 
     @Override
@@ -254,52 +287,10 @@ public class MemoryDataView implements DataView {
                     "Cannot insert self-referencing DataSerializable");
             copyDataView(path, valueContainer);
         } else {
-            List<String> parts = path.getParts();
-            if (parts.size() > 1) {
-                String subKey = parts.get(0);
-                DataQuery subQuery = of(subKey);
-                Optional<DataView> subViewOptional =
-                        this.getUnsafeView(subQuery);
-                DataView subView;
-                if (!subViewOptional.isPresent()) {
-                    this.createView(subQuery);
-                    subView = (DataView) this.map.get(subKey);
-                } else {
-                    subView = subViewOptional.get();
-                }
-                List<String> subParts =
-                        Lists.newArrayListWithCapacity(parts.size() - 1);
-                for (int i = 1; i < parts.size(); i++) {
-                    subParts.add(parts.get(i));
-                }
-                subView.set(of(subParts), value);
-            } else {
-                if (value instanceof Collection) {
-                    setCollection(parts.get(0), (Collection) value);
-                } else if (value instanceof Map) {
-                    setMap(parts.get(0), (Map) value);
-                } else if (value.getClass().isArray()) {
-                    if (value instanceof byte[]) {
-                        this.map.put(parts.get(0), ((byte[]) value).clone());
-                    } else if (value instanceof short[]) {
-                        this.map.put(parts.get(0), ((short[]) value).clone());
-                    } else if (value instanceof int[]) {
-                        this.map.put(parts.get(0), ((int[]) value).clone());
-                    } else if (value instanceof long[]) {
-                        this.map.put(parts.get(0), ((long[]) value).clone());
-                    } else if (value instanceof float[]) {
-                        this.map.put(parts.get(0), ((float[]) value).clone());
-                    } else if (value instanceof double[]) {
-                        this.map.put(parts.get(0), ((double[]) value).clone());
-                    } else if (value instanceof boolean[]) {
-                        this.map.put(parts.get(0), ((boolean[]) value).clone());
-                    } else {
-                        this.map.put(parts.get(0), ((Object[]) value).clone());
-                    }
-                } else {
-                    this.map.put(parts.get(0), value);
-                }
-            }
+            int last = path.getDepth() - 1;
+            checkArgument(last >= 0,
+                    "The size of the query must be at least 1");
+            walk(path, last, true).setLocal(path.getParts().get(last), value);
         }
         return this;
     }
@@ -309,6 +300,48 @@ public class MemoryDataView implements DataView {
         return set(checkNotNull(key, "Key was null!").getQuery(), value);
     }
 
+    @Override
+    public DataView setOwned(DataQuery path, Object array) {
+        checkNotNull(path, "path");
+        checkNotNull(array, "array");
+        checkArgument(array.getClass().isArray(), "%s is not an array",
+                array.getClass().getName());
+        checkState(this.container != null);
+        int last = path.getDepth() - 1;
+        checkArgument(last >= 0, "The size of the query must be at least 1");
+        walk(path, last, true).map.put(path.getParts().get(last), array);
+        return this;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void setLocal(String key, Object value) {
+        if (value instanceof Collection) {
+            setCollection(key, (Collection) value);
+        } else if (value instanceof Map) {
+            setMap(key, (Map) value);
+        } else if (value.getClass().isArray()) {
+            if (value instanceof byte[]) {
+                this.map.put(key, ((byte[]) value).clone());
+            } else if (value instanceof short[]) {
+                this.map.put(key, ((short[]) value).clone());
+            } else if (value instanceof int[]) {
+                this.map.put(key, ((int[]) value).clone());
+            } else if (value instanceof long[]) {
+                this.map.put(key, ((long[]) value).clone());
+            } else if (value instanceof float[]) {
+                this.map.put(key, ((float[]) value).clone());
+            } else if (value instanceof double[]) {
+                this.map.put(key, ((double[]) value).clone());
+            } else if (value instanceof boolean[]) {
+                this.map.put(key, ((boolean[]) value).clone());
+            } else {
+                this.map.put(key, ((Object[]) value).clone());
+            }
+        } else {
+            this.map.put(key, value);
+        }
+    }
+
     @SuppressWarnings("rawtypes")
     private void setCollection(String key, Collection<?> value) {
         ImmutableList.Builder<Object> builder = ImmutableList.builder();
@@ -316,7 +349,7 @@ public class MemoryDataView implements DataView {
             if (object instanceof DataSerializable) {
                 builder.add(((DataSerializable) object).toContainer());
             } else if (object instanceof DataView) {
-                MemoryDataView view = new MemoryDataContainer();
+                MemoryDataView view = newContainer();
                 DataView internalView = (DataView) object;
                 for (Map.Entry<DataQuery, Object> entry : internalView
                         .getValues(false).entrySet()) {
@@ -388,25 +421,11 @@ public class MemoryDataView implements DataView {
     @Override
     public DataView remove(DataQuery path) {
         checkNotNull(path, "path");
-        List<String> parts = path.getParts();
-        if (parts.size() > 1) {
-            String subKey = parts.get(0);
-            DataQuery subQuery = of(subKey);
-            Optional<DataView> subViewOptional = this.getUnsafeView(subQuery);
-            DataView subView;
-            if (!subViewOptional.isPresent()) {
-                return this;
-            } else {
-                subView = subViewOptional.get();
-            }
-            List<String> subParts =
-                    Lists.newArrayListWithCapacity(parts.size() - 1);
-            for (int i = 1; i < parts.size(); i++) {
-                subParts.add(parts.get(i));
-            }
-            subView.remove(of(subParts));
-        } else {
-            this.map.remove(parts.get(0));
+        int last = path.getDepth() - 1;
+        checkArgument(last >= 0, "The size of the query must be at least 1");
+        MemoryDataView view = walk(path, last, false);
+        if (view != null) {
+            view.map.remove(path.getParts().get(last));
         }
         return this;
     }
@@ -414,32 +433,15 @@ public class MemoryDataView implements DataView {
     @Override
     public DataView createView(DataQuery path) {
         checkNotNull(path, "path");
-        List<DataQuery> queryParts = path.getQueryParts();
-
-        int sz = queryParts.size();
+        int last = path.getDepth() - 1;
 
-        checkArgument(sz != 0, "The size of the query must be at least 1");
+        checkArgument(last >= 0, "The size of the query must be at least 1");
 
-        if (sz == 1) {
-            DataQuery key = queryParts.get(0);
-            DataView result = new MemoryDataView(this, key);
-            this.map.put(key.getParts().get(0), result);
-            return result;
-        } else {
-            List<String> subParts =
-                    Lists.newArrayListWithCapacity(queryParts.size() - 1);
-            for (int i = 1; i < sz; i++) {
-                subParts.add(queryParts.get(i).asString('.'));
-            }
-            DataQuery subQuery = of(subParts);
-            DataView subView =
-                    (DataView) this.map.get(queryParts.get(0).asString('.'));
-            if (subView == null) {
-                subView = new MemoryDataView(this.parent, queryParts.get(0));
-                this.map.put(queryParts.get(0).asString('.'), subView);
-            }
-            return subView.createView(subQuery);
-        }
+        MemoryDataView view = walk(path, last, true);
+        DataQuery key = path.getQueryParts().get(last);
+        DataView result = new MemoryDataView(view, key);
+        view.map.put(path.getParts().get(last), result);
+        return result;
     }
 
     @Override
@@ -520,16 +522,6 @@ public class MemoryDataView implements DataView {
         }
     }
 
-    private Optional<DataView> getUnsafeView(DataQuery path) {
-        Optional<Object> val = get(path);
-        if (val.isPresent()) {
-            if (val.get() instanceof DataView) {
-                return Optional.of((DataView) val.get());
-            }
-        }
-        return Optional.empty();
-    }
-
     @Override
     public Optional<Boolean> getBoolean(DataQuery path) {
         Optional<Object> val = get(path);
@@ -813,13 +805,155 @@ public class MemoryDataView implements DataView {
         return Optional.of(newList);
     }
 
+    /**
+     * Gets the value stored at {@code path} without copying arrays.
+     */
+    @Nullable
+    private Object getRaw(DataQuery path) {
+        checkNotNull(path, "path");
+        int last = path.getDepth() - 1;
+        if (last < 0) {
+            return null;
+        }
+        MemoryDataView view = walk(path, last, false);
+        return view == null ? null : view.map.get(path.getParts().get(last));
+    }
+
+    @Override
+    public Optional<ByteBuffer> getByteBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof byte[]) {
+            return Optional.of(
+                    ByteBuffer.wrap((byte[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<ShortBuffer> getShortBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof short[]) {
+            return Optional.of(
+                    ShortBuffer.wrap((short[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<IntBuffer> getIntBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof int[]) {
+            return Optional.of(
+                    IntBuffer.wrap((int[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<LongBuffer> getLongBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof long[]) {
+            return Optional.of(
+                    LongBuffer.wrap((long[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<FloatBuffer> getFloatBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof float[]) {
+            return Optional.of(
+                    FloatBuffer.wrap((float[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<DoubleBuffer> getDoubleBuffer(DataQuery path) {
+        Object array = getRaw(path);
+        if (array instanceof double[]) {
+            return Optional.of(
+                    DoubleBuffer.wrap((double[]) array).asReadOnlyBuffer());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<int[]> getIntArray(DataQuery path) {
+        Object value = getRaw(path);
+        if (value instanceof int[]) {
+            return Optional.of(((int[]) value).clone());
+        } else if (value instanceof CompactDataMap.IntList) {
+            return Optional.of(((CompactDataMap.IntList) value).toIntArray());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            int[] array = new int[list.size()];
+            int n = 0;
+            for (Object object : list) {
+                Optional<Integer> optional = Coerce.asInteger(object);
+                if (optional.isPresent()) {
+                    array[n++] = optional.get();
+                }
+            }
+            return Optional.of(Arrays.copyOf(array, n));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<long[]> getLongArray(DataQuery path) {
+        Object value = getRaw(path);
+        if (value instanceof long[]) {
+            return Optional.of(((long[]) value).clone());
+        } else if (value instanceof CompactDataMap.LongList) {
+            return Optional
+                    .of(((CompactDataMap.LongList) value).toLongArray());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long[] array = new long[list.size()];
+            int n = 0;
+            for (Object object : list) {
+                Optional<Long> optional = Coerce.asLong(object);
+                if (optional.isPresent()) {
+                    array[n++] = optional.get();
+                }
+            }
+            return Optional.of(Arrays.copyOf(array, n));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<double[]> getDoubleArray(DataQuery path) {
+        Object value = getRaw(path);
+        if (value instanceof double[]) {
+            return Optional.of(((double[]) value).clone());
+        } else if (value instanceof CompactDataMap.DoubleList) {
+            return Optional
+                    .of(((CompactDataMap.DoubleList) value).toDoubleArray());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            double[] array = new double[list.size()];
+            int n = 0;
+            for (Object object : list) {
+                Optional<Double> optional = Coerce.asDouble(object);
+                if (optional.isPresent()) {
+                    array[n++] = optional.get();
+                }
+            }
+            return Optional.of(Arrays.copyOf(array, n));
+        }
+        return Optional.empty();
+    }
+
     @Override
     public <T extends DataSerializable> Optional<T>
             getSerializable(DataQuery path, Class<T> clazz) {
         checkNotNull(path, "path");
         checkNotNull(clazz, "clazz");
         DataManager manager = AutoErgel.getDataManager();
-        Optional<DataView> optional = getUnsafeView(path);
+        Optional<DataView> optional = getView(path);
 
         if (!optional.isPresent()) {
             return Optional.empty();
@@ -862,7 +996,7 @@ public class MemoryDataView implements DataView {
 
     @Override
     public DataContainer copy() {
-        final DataContainer container = new MemoryDataContainer();
+        final DataContainer container = newContainer();
         for (DataQuery query : getKeys(false)) {
             container.set(query, get(query).get());
         }
@@ -879,7 +1013,8 @@ public class MemoryDataView implements DataView {
         if (this == obj) {
             return true;
         }
-        if (obj == null || getClass() != obj.getClass()) {
+        // by content, whichever storage either side uses
+        if (!(obj instanceof MemoryDataView)) {
             return false;
         }
         final MemoryDataView other = (MemoryDataView) obj;
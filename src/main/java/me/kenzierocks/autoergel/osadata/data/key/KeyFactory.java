@@ -40,6 +40,11 @@ import me.kenzierocks.autoergel.osadata.data.value.mutable.Value;
  * A factory of {@link Key}s, useful for both the implementation of SpongeAPI,
  * and for plugins wishing to provide their own {@link Key}s without having to
  * remain afraid of having to cast back and forth.
+ *
+ * <p>
+ * Keys are long-lived, so every key holds the {@link DataQuery#intern()
+ * interned} form of its query.
+ * </p>
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public final class KeyFactory {
@@ -74,6 +79,7 @@ public final class KeyFactory {
     public static <E, T extends BaseValue, V extends BaseValue<E>> Key<V>
             makeSingleKey(final Class<E> elementClass,
                     final Class<T> valueClass, final DataQuery query) {
+        final DataQuery keyQuery = query.intern();
         return new Key<V>() {
 
             @Override
@@ -83,19 +89,19 @@ public final class KeyFactory {
 
             @Override
             public DataQuery getQuery() {
-                return query;
+                return keyQuery;
             }
 
             @Override
             public int hashCode() {
-                return Objects.hashCode(elementClass, valueClass, query);
+                return Objects.hashCode(elementClass, valueClass, keyQuery);
             }
 
             @Override
             public String toString() {
                 return "Key{Value:" + valueClass.getSimpleName() + "<"
                         + elementClass.getSimpleName() + ">, Query: "
-                        + query.toString() + "}";
+                        + keyQuery.toString() + "}";
             }
         };
     }
@@ -114,6 +120,7 @@ public final class KeyFactory {
      */
     public static <E> Key<ListValue<E>> makeListKey(final Class<E> elementClass,
             final DataQuery query) {
+        final DataQuery keyQuery = query.intern();
         return new Key<ListValue<E>>() {
 
             @Override
@@ -123,19 +130,19 @@ public final class KeyFactory {
 
             @Override
             public DataQuery getQuery() {
-                return query;
+                return keyQuery;
             }
 
             @Override
             public int hashCode() {
-                return Objects.hashCode(elementClass, query);
+                return Objects.hashCode(elementClass, keyQuery);
             }
 
             @Override
             public String toString() {
                 return "Key{Value:" + "ListValue<"
                         + elementClass.getSimpleName() + ">, Query: "
-                        + query.toString() + "}";
+                        + keyQuery.toString() + "}";
             }
         };
     }
@@ -154,6 +161,7 @@ public final class KeyFactory {
      */
     public static <E> Key<SetValue<E>> makeSetKey(final Class<E> elementClass,
             final DataQuery query) {
+        final DataQuery keyQuery = query.intern();
         return new Key<SetValue<E>>() {
 
             @Override
@@ -163,18 +171,18 @@ public final class KeyFactory {
 
             @Override
             public DataQuery getQuery() {
-                return query;
+                return keyQuery;
             }
 
             @Override
             public int hashCode() {
-                return Objects.hashCode(elementClass, query);
+                return Objects.hashCode(elementClass, keyQuery);
             }
 
             @Override
             public String toString() {
                 return "Key{Value:" + "SetValue<" + elementClass.getSimpleName()
-                        + ">, Query: " + query.toString() + "}";
+                        + ">, Query: " + keyQuery.toString() + "}";
             }
         };
     }
@@ -198,6 +206,7 @@ public final class KeyFactory {
      */
     public static <K, V> Key<MapValue<K, V>> makeMapKey(final Class<K> keyClass,
             final Class<V> valueclass, final DataQuery query) {
+        final DataQuery keyQuery = query.intern();
         return new Key<MapValue<K, V>>() {
 
             @Override
@@ -207,19 +216,19 @@ public final class KeyFactory {
 
             @Override
             public DataQuery getQuery() {
-                return query;
+                return keyQuery;
             }
 
             @Override
             public int hashCode() {
-                return Objects.hashCode(keyClass, valueclass, query);
+                return Objects.hashCode(keyClass, valueclass, keyQuery);
             }
 
             @Override
             public String toString() {
                 return "Key{Value:" + "MapValue<" + keyClass.getSimpleName()
                         + "," + valueclass.getSimpleName() + ">, Query: "
-                        + query.toString() + "}";
+                        + keyQuery.toString() + "}";
             }
         };
     }
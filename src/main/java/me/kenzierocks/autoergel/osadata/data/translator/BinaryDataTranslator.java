@@ -0,0 +1,559 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data.translator;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataQuery;
+import me.kenzierocks.autoergel.osadata.data.DataView;
+import me.kenzierocks.autoergel.osadata.data.MemoryDataContainer;
+import me.kenzierocks.autoergel.osadata.util.persistence.InvalidDataException;
+
+/**
+ * A {@link DataTranslator} to and from a compact binary encoding held in a
+ * {@link ByteBuffer}.
+ *
+ * <p>
+ * A view is written as a sequence of entries closed by an end tag, each entry
+ * being a tag byte, the entry's name and its value. Names, strings, lists,
+ * maps and arrays are prefixed with their length, and int and long values use
+ * a variable-length encoding, so the small numbers common in item data take
+ * one or two bytes. Fixed-width values are big-endian whatever the order of
+ * the buffer.
+ * </p>
+ *
+ * <p>
+ * Writing walks the view with {@link DataView#forEachValue(BiConsumer)} and
+ * reading fills the new view entry by entry, so neither direction builds
+ * intermediate maps of the view. Supported values are views, lists, maps,
+ * boxed primitives, strings, and arrays of every primitive type but
+ * {@code char}. Boolean arrays are packed eight to a byte.
+ * </p>
+ */
+public final class BinaryDataTranslator implements DataTranslator<ByteBuffer> {
+
+    private static final byte END = 0;
+    private static final byte VIEW = 1;
+    private static final byte LIST = 2;
+    private static final byte MAP = 3;
+    private static final byte FALSE = 4;
+    private static final byte TRUE = 5;
+    private static final byte BYTE = 6;
+    private static final byte SHORT = 7;
+    private static final byte INT = 8;
+    private static final byte LONG = 9;
+    private static final byte FLOAT = 10;
+    private static final byte DOUBLE = 11;
+    private static final byte STRING = 12;
+    private static final byte CHAR = 13;
+    private static final byte BYTE_ARRAY = 14;
+    private static final byte INT_ARRAY = 15;
+    private static final byte LONG_ARRAY = 16;
+    private static final byte DOUBLE_ARRAY = 17;
+    private static final byte SHORT_ARRAY = 18;
+    private static final byte FLOAT_ARRAY = 19;
+    private static final byte BOOLEAN_ARRAY = 20;
+
+    private static final int INITIAL_SIZE = 256;
+
+    private final Supplier<? extends DataContainer> containers;
+
+    /**
+     * Creates a translator that reads into {@link MemoryDataContainer}s.
+     */
+    public BinaryDataTranslator() {
+        this(MemoryDataContainer::new);
+    }
+
+    /**
+     * Creates a translator that reads into containers from the given
+     * supplier, which must return a new, empty container on each call.
+     */
+    public BinaryDataTranslator(Supplier<? extends DataContainer> containers) {
+        this.containers = checkNotNull(containers, "containers");
+    }
+
+    /**
+     * @return A new buffer holding the encoded view, ready to be read
+     * @throws IllegalArgumentException
+     *             If the view holds a value that can't be encoded
+     */
+    @Override
+    public ByteBuffer translateData(DataView container) {
+        ByteBuffer buffer = write(container, ByteBuffer.allocate(INITIAL_SIZE));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the view at the position of {@code node}, and advances it.
+     *
+     * @throws java.nio.BufferOverflowException
+     *             If the view doesn't fit in the remaining space, in which
+     *             case the position of {@code node} is not changed
+     * @throws IllegalArgumentException
+     *             If the view holds a value that can't be encoded
+     */
+    @Override
+    public void translateContainerToData(ByteBuffer node, DataView container) {
+        Writer writer = new Writer(node.duplicate(), false);
+        writer.writeView(checkNotNull(container, "container"));
+        node.position(writer.buffer.position());
+    }
+
+    /**
+     * Writes the view at the position of {@code buffer}, moving to a larger
+     * buffer when it runs out of space. This lets callers encode many views
+     * into one reused buffer.
+     *
+     * @return The buffer holding the contents of {@code buffer} followed by
+     *         the view, positioned after the view. This is {@code buffer}
+     *         itself unless it was too small.
+     * @throws IllegalArgumentException
+     *             If the view holds a value that can't be encoded
+     */
+    public ByteBuffer write(DataView container, ByteBuffer buffer) {
+        Writer writer = new Writer(buffer.duplicate(), true);
+        writer.writeView(checkNotNull(container, "container"));
+        if (writer.buffer.capacity() == buffer.capacity()) {
+            buffer.position(writer.buffer.position());
+            return buffer;
+        }
+        return writer.buffer;
+    }
+
+    /**
+     * Reads a view from the position of {@code node}, and advances it past
+     * the view.
+     *
+     * @throws InvalidDataException
+     *             If the data is truncated or malformed, in which case the
+     *             position of {@code node} is not changed
+     */
+    @Override
+    public DataContainer translateFrom(ByteBuffer node) {
+        ByteBuffer in = node.duplicate().order(ByteOrder.BIG_ENDIAN);
+        DataContainer container = this.containers.get();
+        try {
+            readView(in, container);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidDataException("truncated data", e);
+        }
+        node.position(in.position());
+        return container;
+    }
+
+    private static final class Writer {
+
+        private ByteBuffer buffer;
+        private final boolean growable;
+
+        Writer(ByteBuffer buffer, boolean growable) {
+            this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+            this.growable = growable;
+        }
+
+        /**
+         * Makes room for {@code bytes} more bytes if this writer may grow.
+         * Otherwise the write that follows overflows.
+         */
+        private ByteBuffer ensure(int bytes) {
+            ByteBuffer buffer = this.buffer;
+            if (this.growable && buffer.remaining() < bytes) {
+                int capacity = Math.max(buffer.capacity() * 2,
+                        buffer.position() + bytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                buffer.flip();
+                grown.put(buffer);
+                this.buffer = buffer = grown;
+            }
+            return buffer;
+        }
+
+        void writeView(DataView view) {
+            view.forEachValue(this::writeValue);
+            ensure(1).put(END);
+        }
+
+        private void writeVarInt(int value) {
+            ByteBuffer buffer = ensure(5);
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                buffer.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+        }
+
+        private void writeVarLong(long value) {
+            ByteBuffer buffer = ensure(10);
+            long v = value;
+            while ((v & ~0x7FL) != 0) {
+                buffer.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+        }
+
+        private void writeString(String s) {
+            int length = s.length();
+            int ascii = 0;
+            while (ascii < length && s.charAt(ascii) < 0x80) {
+                ascii++;
+            }
+            if (ascii == length) {
+                writeVarInt(length);
+                ByteBuffer buffer = ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) s.charAt(i));
+                }
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                ensure(bytes.length).put(bytes);
+            }
+        }
+
+        /**
+         * Writes the tag, then the name if there is one, then the value.
+         */
+        private void writeValue(@Nullable String name, Object value) {
+            if (value instanceof DataView) {
+                writeTag(VIEW, name);
+                writeView((DataView) value);
+            } else if (value instanceof Collection) {
+                Collection<?> list = (Collection<?>) value;
+                writeTag(LIST, name);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(null, element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeTag(MAP, name);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(null, entry.getKey());
+                    writeValue(null, entry.getValue());
+                }
+            } else if (value instanceof Boolean) {
+                writeTag((Boolean) value ? TRUE : FALSE, name);
+            } else if (value instanceof Byte) {
+                writeTag(BYTE, name);
+                ensure(1).put((Byte) value);
+            } else if (value instanceof Short) {
+                writeTag(SHORT, name);
+                ensure(2).putShort((Short) value);
+            } else if (value instanceof Integer) {
+                int i = (Integer) value;
+                writeTag(INT, name);
+                writeVarInt((i << 1) ^ (i >> 31));
+            } else if (value instanceof Long) {
+                long l = (Long) value;
+                writeTag(LONG, name);
+                writeVarLong((l << 1) ^ (l >> 63));
+            } else if (value instanceof Float) {
+                writeTag(FLOAT, name);
+                ensure(4).putFloat((Float) value);
+            } else if (value instanceof Double) {
+                writeTag(DOUBLE, name);
+                ensure(8).putDouble((Double) value);
+            } else if (value instanceof String) {
+                writeTag(STRING, name);
+                writeString((String) value);
+            } else if (value instanceof Character) {
+                writeTag(CHAR, name);
+                ensure(2).putChar((Character) value);
+            } else if (value instanceof byte[]) {
+                byte[] array = (byte[]) value;
+                writeTag(BYTE_ARRAY, name);
+                writeVarInt(array.length);
+                ensure(array.length).put(array);
+            } else if (value instanceof short[]) {
+                short[] array = (short[]) value;
+                writeTag(SHORT_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(array.length * Short.BYTES);
+                buffer.asShortBuffer().put(array);
+                buffer.position(
+                        buffer.position() + array.length * Short.BYTES);
+            } else if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                writeTag(INT_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(array.length * Integer.BYTES);
+                buffer.asIntBuffer().put(array);
+                buffer.position(
+                        buffer.position() + array.length * Integer.BYTES);
+            } else if (value instanceof long[]) {
+                long[] array = (long[]) value;
+                writeTag(LONG_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(array.length * Long.BYTES);
+                buffer.asLongBuffer().put(array);
+                buffer.position(buffer.position() + array.length * Long.BYTES);
+            } else if (value instanceof float[]) {
+                float[] array = (float[]) value;
+                writeTag(FLOAT_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(array.length * Float.BYTES);
+                buffer.asFloatBuffer().put(array);
+                buffer.position(
+                        buffer.position() + array.length * Float.BYTES);
+            } else if (value instanceof double[]) {
+                double[] array = (double[]) value;
+                writeTag(DOUBLE_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(array.length * Double.BYTES);
+                buffer.asDoubleBuffer().put(array);
+                buffer.position(
+                        buffer.position() + array.length * Double.BYTES);
+            } else if (value instanceof boolean[]) {
+                boolean[] array = (boolean[]) value;
+                writeTag(BOOLEAN_ARRAY, name);
+                writeVarInt(array.length);
+                ByteBuffer buffer = ensure(packedLength(array.length));
+                for (int i = 0; i < array.length; i += 8) {
+                    int bits = 0;
+                    for (int b = 0; b < 8 && i + b < array.length; b++) {
+                        if (array[i + b]) {
+                            bits |= 1 << b;
+                        }
+                    }
+                    buffer.put((byte) bits);
+                }
+            } else {
+                throw new IllegalArgumentException(
+                        "cannot encode " + value.getClass().getName());
+            }
+        }
+
+        private void writeTag(byte tag, @Nullable String name) {
+            ensure(1).put(tag);
+            if (name != null) {
+                writeString(name);
+            }
+        }
+
+    }
+
+    private void readView(ByteBuffer in, DataView view) {
+        for (byte tag = in.get(); tag != END; tag = in.get()) {
+            DataQuery name = DataQuery.of(readString(in));
+            if (tag == VIEW) {
+                readView(in, view.createView(name));
+                continue;
+            }
+            Object value = readValue(in, tag);
+            if (value.getClass().isArray()) {
+                // freshly read, no need for set to copy it again
+                view.setOwned(name, value);
+            } else {
+                view.set(name, value);
+            }
+        }
+    }
+
+    private Object readValue(ByteBuffer in, byte tag) {
+        switch (tag) {
+            case VIEW: {
+                DataContainer container = this.containers.get();
+                readView(in, container);
+                return container;
+            }
+            case LIST: {
+                int size = readLength(in, 1);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, in.get()));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readLength(in, 2);
+                ImmutableMap.Builder<Object, Object> map =
+                        ImmutableMap.builder();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in, in.get()), readValue(in, in.get()));
+                }
+                try {
+                    return map.build();
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidDataException("duplicate map key", e);
+                }
+            }
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case BYTE:
+                return in.get();
+            case SHORT:
+                return in.getShort();
+            case INT: {
+                int i = readVarInt(in);
+                return (i >>> 1) ^ -(i & 1);
+            }
+            case LONG: {
+                long l = readVarLong(in);
+                return (l >>> 1) ^ -(l & 1);
+            }
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case STRING:
+                return readString(in);
+            case CHAR:
+                return in.getChar();
+            case BYTE_ARRAY: {
+                byte[] array = new byte[readLength(in, 1)];
+                in.get(array);
+                return array;
+            }
+            case SHORT_ARRAY: {
+                short[] array = new short[readLength(in, Short.BYTES)];
+                in.asShortBuffer().get(array);
+                in.position(in.position() + array.length * Short.BYTES);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[readLength(in, Integer.BYTES)];
+                in.asIntBuffer().get(array);
+                in.position(in.position() + array.length * Integer.BYTES);
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[readLength(in, Long.BYTES)];
+                in.asLongBuffer().get(array);
+                in.position(in.position() + array.length * Long.BYTES);
+                return array;
+            }
+            case FLOAT_ARRAY: {
+                float[] array = new float[readLength(in, Float.BYTES)];
+                in.asFloatBuffer().get(array);
+                in.position(in.position() + array.length * Float.BYTES);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[readLength(in, Double.BYTES)];
+                in.asDoubleBuffer().get(array);
+                in.position(in.position() + array.length * Double.BYTES);
+                return array;
+            }
+            case BOOLEAN_ARRAY: {
+                int length = readVarInt(in);
+                if (length < 0 || packedLength(length) > in.remaining()) {
+                    throw new InvalidDataException("bad length " + length);
+                }
+                boolean[] array = new boolean[length];
+                for (int i = 0; i < length; i += 8) {
+                    int bits = in.get();
+                    for (int b = 0; b < 8 && i + b < length; b++) {
+                        array[i + b] = (bits & (1 << b)) != 0;
+                    }
+                }
+                return array;
+            }
+            default:
+                throw new InvalidDataException("unknown value tag " + tag);
+        }
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new InvalidDataException("variable-length int too long");
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7FL) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new InvalidDataException("variable-length long too long");
+    }
+
+    /**
+     * Reads a length, checking that its elements of at least
+     * {@code elementSize} bytes each fit in the remaining data.
+     */
+    private static int readLength(ByteBuffer in, int elementSize) {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.remaining() / elementSize) {
+            throw new InvalidDataException("bad length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * @return The number of bytes holding {@code length} packed booleans
+     */
+    private static int packedLength(int length) {
+        return (int) ((length + 7L) / 8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readLength(in, 1);
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(),
+                    length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+}
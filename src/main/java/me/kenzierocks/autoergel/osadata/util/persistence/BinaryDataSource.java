@@ -0,0 +1,286 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.util.persistence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataSerializable;
+import me.kenzierocks.autoergel.osadata.data.translator.BinaryDataTranslator;
+import me.kenzierocks.autoergel.recipe.AutoErgel;
+
+/**
+ * A {@link DataSource} that streams records over byte channels. Each record is
+ * a length-prefixed view in the {@link BinaryDataTranslator} encoding;
+ * {@link #serialize(DataSerializable)} appends one and {@link #deserialize()}
+ * reads the next.
+ *
+ * <p>
+ * Records are encoded into and read from a buffer that is reused between
+ * records, so streaming many records doesn't allocate per record beyond the
+ * decoded values. The channels are expected to be blocking. A source is not
+ * safe for use from multiple threads.
+ * </p>
+ *
+ * <p>
+ * A record's length prefix is not trusted: records longer than
+ * {@link #getMaxRecordSize()} are rejected, and the read buffer only grows as
+ * the record's bytes actually arrive.
+ * </p>
+ */
+public final class BinaryDataSource implements DataSource, Closeable {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    public static BinaryDataSource reading(ReadableByteChannel in) {
+        return reading(in, new BinaryDataTranslator());
+    }
+
+    /**
+     * Creates a source reading with the given translator, which decides the
+     * kind of container records are read into.
+     */
+    public static BinaryDataSource reading(ReadableByteChannel in,
+            BinaryDataTranslator translator) {
+        return new BinaryDataSource(checkNotNull(in, "in"), null,
+                checkNotNull(translator, "translator"));
+    }
+
+    public static BinaryDataSource writing(WritableByteChannel out) {
+        return new BinaryDataSource(null, checkNotNull(out, "out"),
+                new BinaryDataTranslator());
+    }
+
+    public static BinaryDataSource of(ByteChannel channel) {
+        return of(channel, new BinaryDataTranslator());
+    }
+
+    /**
+     * Creates a source reading and writing through {@code channel}, reading
+     * with the given translator.
+     */
+    public static BinaryDataSource of(ByteChannel channel,
+            BinaryDataTranslator translator) {
+        checkNotNull(channel, "channel");
+        return new BinaryDataSource(channel, channel,
+                checkNotNull(translator, "translator"));
+    }
+
+    @Nullable
+    private final ReadableByteChannel in;
+    @Nullable
+    private final WritableByteChannel out;
+    private final BinaryDataTranslator translator;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int maxRecordSize = DEFAULT_MAX_RECORD_SIZE;
+
+    private BinaryDataSource(@Nullable ReadableByteChannel in,
+            @Nullable WritableByteChannel out,
+            BinaryDataTranslator translator) {
+        this.in = in;
+        this.out = out;
+        this.translator = translator;
+    }
+
+    /**
+     * @return The largest record, in bytes, that {@link #deserialize()}
+     *         accepts
+     */
+    public int getMaxRecordSize() {
+        return this.maxRecordSize;
+    }
+
+    /**
+     * Sets the largest record, in bytes, that {@link #deserialize()} accepts.
+     * Defaults to {@value #DEFAULT_MAX_RECORD_SIZE}.
+     */
+    public void setMaxRecordSize(int maxRecordSize) {
+        checkArgument(maxRecordSize > 0, "maxRecordSize must be positive");
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    /**
+     * @return The next record, or an absent if the channel is at its end
+     * @throws InvalidDataException
+     *             If the record is truncated, malformed or longer than
+     *             {@link #getMaxRecordSize()}
+     * @throws UncheckedIOException
+     *             If reading from the channel fails
+     */
+    @Override
+    public Optional<DataContainer> deserialize() {
+        checkState(this.in != null, "This source is not readable");
+        checkState(!isClosed(), "This source is closed");
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.limit(Integer.BYTES);
+        if (!fill(buffer)) {
+            if (buffer.position() == 0) {
+                return Optional.empty();
+            }
+            throw new InvalidDataException("truncated record length");
+        }
+        int length = buffer.getInt(0);
+        if (length < 0) {
+            throw new InvalidDataException("bad record length " + length);
+        }
+        if (length > this.maxRecordSize) {
+            throw new InvalidDataException("record of " + length
+                    + " bytes exceeds the maximum of " + this.maxRecordSize);
+        }
+        buffer.clear();
+        buffer.limit(Math.min(length, buffer.capacity()));
+        while (fill(buffer)) {
+            if (buffer.position() == length) {
+                buffer.flip();
+                DataContainer container =
+                        this.translator.translateFrom(buffer);
+                if (buffer.hasRemaining()) {
+                    throw new InvalidDataException(buffer.remaining()
+                            + " unexpected trailing bytes in record");
+                }
+                return Optional.of(container);
+            }
+            // only grow for bytes that actually arrived
+            int capacity =
+                    (int) Math.min(length, (long) buffer.capacity() * 2);
+            buffer.flip();
+            this.buffer = buffer = ByteBuffer.allocate(capacity).put(buffer);
+        }
+        throw new InvalidDataException("truncated record");
+    }
+
+    /**
+     * Reads from the channel until {@code buffer} is full.
+     *
+     * @return {@code false} if the channel ended first
+     */
+    private boolean fill(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                if (this.in.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next record and builds it with the {@link DataBuilder}
+     * registered for {@code clazz}. If there is no such builder, the record is
+     * left unread.
+     *
+     * @throws UncheckedIOException
+     *             If reading from the channel fails
+     */
+    @Override
+    public <T extends DataSerializable> Optional<T> deserialize(Class<T> clazz)
+            throws InvalidDataException {
+        checkNotNull(clazz, "clazz");
+        Optional<DataBuilder<T>> builder =
+                AutoErgel.getDataManager().getBuilder(clazz);
+        if (!builder.isPresent()) {
+            return Optional.empty();
+        }
+        Optional<DataContainer> container = deserialize();
+        if (!container.isPresent()) {
+            return Optional.empty();
+        }
+        return builder.get().build(container.get());
+    }
+
+    /**
+     * @throws InvalidDataException
+     *             If the data holds a value that can't be encoded
+     * @throws UncheckedIOException
+     *             If writing to the channel fails
+     */
+    @Override
+    public void serialize(DataSerializable section)
+            throws InvalidDataException {
+        checkNotNull(section, "section");
+        checkState(this.out != null, "This source is not writable");
+        checkState(!isClosed(), "This source is closed");
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.position(Integer.BYTES);
+        try {
+            buffer = this.translator.write(section.toContainer(), buffer);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException(e.getMessage(), e);
+        }
+        this.buffer = buffer;
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                this.out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return isClosed(this.in) || isClosed(this.out);
+    }
+
+    private static boolean isClosed(@Nullable Channel channel) {
+        return channel != null && !channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.in != null) {
+                this.in.close();
+            }
+        } finally {
+            if (this.out != null && this.out != this.in) {
+                this.out.close();
+            }
+        }
+    }
+
+}
@@ -27,6 +27,10 @@ package me.kenzierocks.autoergel.recipe;
 import java.util.Optional;
 import java.util.Set;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import me.kenzierocks.autoergel.osadata.data.DataContainer;
 import me.kenzierocks.autoergel.osadata.data.DataHolder;
 import me.kenzierocks.autoergel.osadata.data.DataManager;
@@ -71,27 +75,122 @@ public abstract class AutoErgel {
              */
             ItemType getNoneType();
 
+            /**
+             * Numbers the provided types densely. The shared registry for
+             * {@link #INSTANCE} is {@link ItemTypeRegistry#current()};
+             * implementations that assign their own ids should return a
+             * registry agreeing with {@link ItemType#getNumericId()}.
+             */
+            default ItemTypeRegistry createRegistry() {
+                return ItemTypeRegistry.of(this);
+            }
+
         }
 
         ItemType NONE = Provider.INSTANCE.getNoneType();
 
+        /**
+         * Only needed to store recipes in a {@link RecipeFile}. The default
+         * throws, so that types written before ids existed keep compiling;
+         * such types should implement it.
+         * 
+         * @return The id {@link Provider#getById(String)} finds this type
+         *         under
+         * @throws UnsupportedOperationException
+         *             If this type has no id
+         */
+        default String getId() {
+            throw new UnsupportedOperationException(
+                    getClass().getName() + " does not implement getId()");
+        }
+
+        /**
+         * The default looks this type up in
+         * {@link ItemTypeRegistry#current()}. Implementations are encouraged
+         * to store the id instead.
+         * 
+         * @return The dense id of this type, or
+         *         {@link ItemTypeRegistry#UNKNOWN_ID}
+         */
+        default int getNumericId() {
+            return ItemTypeRegistry.current().getId(this);
+        }
+
     }
 
     /**
-     * Required to make a defensive copy of {@link #NONE_STACK}. TODO: Consider
-     * implementing immutable stacks at some point.
+     * Holds the shared snapshots handed out by
+     * {@link ItemStackSnapshot#getNoneStack()} and
+     * {@link ItemStackSnapshot#interned(ItemType, int, int)}.
      */
     private static final class ISCommonHelper {
 
+        private static final class InternKey {
+
+            private final ItemType item;
+            private final int quantity;
+            private final int damage;
+
+            InternKey(ItemType item, int quantity, int damage) {
+                this.item = item;
+                this.quantity = quantity;
+                this.damage = damage;
+            }
+
+            @Override
+            public int hashCode() {
+                final int prime = 31;
+                int result = 1;
+                result = prime * result + this.item.hashCode();
+                result = prime * result + this.quantity;
+                result = prime * result + this.damage;
+                return result;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (this == obj) {
+                    return true;
+                }
+                if (!(obj instanceof InternKey)) {
+                    return false;
+                }
+                InternKey other = (InternKey) obj;
+                return this.quantity == other.quantity
+                        && this.damage == other.damage
+                        && this.item.equals(other.item);
+            }
+
+        }
+
+        private static final int INTERNED_MAXIMUM_SIZE = 4096;
+
+        private static final LoadingCache<InternKey, ItemStackSnapshot> INTERNED =
+                CacheBuilder.newBuilder().maximumSize(INTERNED_MAXIMUM_SIZE)
+                        .build(CacheLoader.from(key -> ItemStack.Factory.INSTANCE
+                                .createSnapshot(key.item, key.quantity,
+                                        key.damage)));
+
         /**
-         * This field is not guaranteed to be the only stack of {@code NONE}
-         * available, it is meant as a convenience only.
+         * Snapshots are immutable, so this single instance is shared by
+         * everyone asking for an empty stack.
          */
         private static final ItemStackSnapshot NONE_STACK = ItemStackSnapshot
                 .of(ItemType.Provider.INSTANCE.getNoneType(), 0);
 
+        private static ItemStackSnapshot interned(ItemType item, int quantity,
+                int damage) {
+            if (quantity == 0 && damage == 0
+                    && item.equals(NONE_STACK.getItem())) {
+                return NONE_STACK;
+            }
+            return INTERNED
+                    .getUnchecked(new InternKey(item, quantity, damage));
+        }
+
         private static boolean manipulatorsEqual(ISCommon<?, ?, ?> o1,
                 ISCommon<?, ?, ?> o2) {
+            // empty containers are compared too, a list never equals a set
             return o1.getContainers().equals(o2.getContainers());
         }
 
@@ -99,6 +198,11 @@ public abstract class AutoErgel {
                 ISCommon<?, ?, ?> b) {
             Class<?> aC = a.getClass();
             Class<?> bC = b.getClass();
+            if (aC == bC) {
+                // nearly every comparison, stacks usually share a factory
+                return true;
+            }
+            // isAssignableFrom is an intrinsic, cheaper than any cache
             return aC.isAssignableFrom(bC) || bC.isAssignableFrom(aC);
         }
 
@@ -117,7 +221,25 @@ public abstract class AutoErgel {
 
         int getMaxDamage();
 
+        /**
+         * @return {@code true} if this stack has any data manipulators
+         */
+        default boolean hasCustomData() {
+            return !getContainers().isEmpty();
+        }
+
+        /**
+         * @return The hash code of {@link #getContainers()}
+         */
+        default int getDataHash() {
+            return getContainers().hashCode();
+        }
+
         default boolean equalIgnoringSize(ISCommon<?, ?, ?> other) {
+            if (other == this) {
+                // always the case for two interned snapshots
+                return true;
+            }
             return other != null && ISCommonHelper.bothHaveCommonParent(this, other)
                     && other.getDamage() == getDamage()
                     && other.getItem().equals(getItem())
@@ -126,6 +248,12 @@ public abstract class AutoErgel {
 
     }
 
+    /**
+     * Snapshots are immutable, and grid fingerprints and snapshot interning
+     * ask every cell for {@link #hasCustomData()} and {@link #getDataHash()}.
+     * Implementations should therefore compute both once, for example in
+     * lazily initialized fields, rather than rely on the defaults.
+     */
     public interface ItemStackSnapshot extends
             ISCommon<ItemStackSnapshot, ItemStackSnapshot, ImmutableDataManipulator<?, ?>>,
             ImmutableDataHolder<ItemStackSnapshot> {
@@ -134,8 +262,33 @@ public abstract class AutoErgel {
             return Factory.INSTANCE.createSnapshot(item, quantity);
         }
 
+        /**
+         * @return The shared snapshot of {@link ItemType#NONE}
+         */
         static ItemStackSnapshot getNoneStack() {
-            return ISCommonHelper.NONE_STACK.copy();
+            return ISCommonHelper.NONE_STACK;
+        }
+
+        /**
+         * Returns a shared snapshot without custom data. Repeated calls with
+         * the same arguments usually return the same instance, though that is
+         * not guaranteed since the pool is bounded.
+         */
+        static ItemStackSnapshot interned(ItemType item, int quantity,
+                int damage) {
+            return ISCommonHelper.interned(item, quantity, damage);
+        }
+
+        /**
+         * Returns the shared equivalent of {@code stack} if it carries no
+         * custom data, otherwise {@code stack} itself.
+         */
+        static ItemStackSnapshot intern(ItemStackSnapshot stack) {
+            if (stack.hasCustomData()) {
+                return stack;
+            }
+            return interned(stack.getItem(), stack.getQuantity(),
+                    stack.getDamage());
         }
 
         ItemStackSnapshot withItem(ItemType item);
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import java.util.Collection;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * Recipe stacks flattened into parallel arrays, so that comparing a grid
+ * stack against them needs no interface dispatch back into the recipe and no
+ * reflective class checks.
+ * 
+ * <p>
+ * Item ids are never looked up while matching, since the default
+ * {@link ItemType#getNumericId()} goes through the shared registry. Callers
+ * that resolved the ids of a whole grid up front pass them in; otherwise the
+ * items are compared with {@code equals}.
+ * </p>
+ */
+final class CompiledStacks {
+
+    private final ItemStackSnapshot[] stacks;
+    private final ItemType[] items;
+    private final int[] ids;
+    private final boolean[] empty;
+    private final int[] damage;
+    private final Class<?>[] classes;
+    private final Collection<?>[] data;
+
+    CompiledStacks(ItemStackSnapshot[] stacks) {
+        int size = stacks.length;
+        this.stacks = stacks.clone();
+        this.items = new ItemType[size];
+        this.ids = new int[size];
+        this.empty = new boolean[size];
+        this.damage = new int[size];
+        this.classes = new Class<?>[size];
+        this.data = new Collection<?>[size];
+        for (int i = 0; i < size; i++) {
+            ItemStackSnapshot stack = stacks[i];
+            this.items[i] = stack.getItem();
+            this.ids[i] = this.items[i].getNumericId();
+            this.empty[i] = GridSignature.isEmpty(stack);
+            this.damage[i] = stack.getDamage();
+            this.classes[i] = stack.getClass();
+            this.data[i] = stack.getContainers();
+        }
+    }
+
+    int size() {
+        return this.stacks.length;
+    }
+
+    ItemStackSnapshot get(int i) {
+        return this.stacks[i];
+    }
+
+    /**
+     * Same as {@code get(i).equalIgnoringSize(stack)}, where {@code null}
+     * stands for an empty stack.
+     */
+    boolean matches(int i, ItemStackSnapshot stack) {
+        return matches(i, stack, ItemTypeRegistry.UNKNOWN_ID);
+    }
+
+    /**
+     * Same as {@link #matches(int, ItemStackSnapshot)}, given the
+     * {@link ItemType#getNumericId() numeric id} of the stack's item, or
+     * {@link ItemTypeRegistry#UNKNOWN_ID} to compare the items themselves.
+     */
+    boolean matches(int i, ItemStackSnapshot stack, int itemId) {
+        if (stack == null) {
+            return this.empty[i];
+        }
+        if (stack == this.stacks[i]) {
+            // interned snapshots meet here
+            return true;
+        }
+        if (!sameItem(i, stack.getItem(), itemId, stack.getDamage())) {
+            return false;
+        }
+        if (stack.getClass() != this.classes[i]) {
+            // unusual implementation mix, let the full check decide
+            return this.stacks[i].equalIgnoringSize(stack);
+        }
+        // empty containers are compared too, a list never equals a set
+        return this.data[i].equals(stack.getContainers());
+    }
+
+    /**
+     * Same as {@link #matches(int, ItemStackSnapshot)} for the
+     * {@link CraftingData#snapshotOf(ItemStack) grid snapshot} of
+     * {@code stack}, but only takes that snapshot once the item and damage
+     * agree.
+     */
+    boolean matches(int i, ItemStack stack) {
+        if (GridSignature.isEmpty(stack)) {
+            return matches(i, CraftingData.snapshotOf(stack));
+        }
+        if (!sameItem(i, stack.getItem(), ItemTypeRegistry.UNKNOWN_ID,
+                stack.getDamage())) {
+            return false;
+        }
+        if (this.data[i].isEmpty() && stack.hasCustomData()) {
+            // no container collection equals a non-empty one
+            return false;
+        }
+        return matches(i, CraftingData.snapshotOf(stack));
+    }
+
+    private boolean sameItem(int i, ItemType item, int itemId, int damage) {
+        if (item != this.items[i]) {
+            int id = this.ids[i];
+            if (id != ItemTypeRegistry.UNKNOWN_ID
+                    && itemId != ItemTypeRegistry.UNKNOWN_ID) {
+                if (itemId != id) {
+                    return false;
+                }
+            } else if (!this.items[i].equals(item)) {
+                return false;
+            }
+        }
+        return damage == this.damage[i];
+    }
+
+    /**
+     * @return The first index that {@link #matches(int, ItemStackSnapshot)
+     *         matches} {@code stack}, or {@code -1}
+     */
+    int indexOf(ItemStackSnapshot stack) {
+        for (int i = 0; i < this.stacks.length; i++) {
+            if (matches(i, stack)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
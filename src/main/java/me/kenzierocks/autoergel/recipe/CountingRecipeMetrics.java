@@ -0,0 +1,371 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * {@link RecipeMetrics} that counts into {@link LongAdder}s, so that lookups
+ * on many threads don't contend on shared counters. Lookup latencies are kept
+ * in a histogram with power-of-two buckets; per-recipe latencies only if
+ * asked for, since every recipe then carries its own histogram. Read the
+ * counts with {@link #snapshot()}.
+ * 
+ * <p>
+ * The counts of a recipe are dropped when it is removed from its manager. A
+ * lookup still running against the old recipes may count it once more.
+ * </p>
+ */
+public final class CountingRecipeMetrics implements RecipeMetrics {
+
+    /**
+     * An immutable latency histogram. Bucket {@code 0} counts times of
+     * {@code 0} nanoseconds, bucket {@code i > 0} counts times in
+     * {@code [2^(i-1), 2^i)} nanoseconds.
+     */
+    public static final class LatencyHistogram {
+
+        public static final int BUCKETS = 64;
+
+        /**
+         * @return The exclusive upper bound of {@code bucket}, in nanoseconds
+         */
+        public static long getUpperBoundNanos(int bucket) {
+            checkElementIndex(bucket, BUCKETS, "bucket");
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        private final long[] buckets;
+        private final long count;
+
+        private LatencyHistogram(long[] buckets) {
+            this.buckets = buckets;
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            this.count = count;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getBucketCount(int bucket) {
+            checkElementIndex(bucket, BUCKETS, "bucket");
+            return this.buckets[bucket];
+        }
+
+        /**
+         * @param fraction
+         *            - between {@code 0} and {@code 1}, e.g. {@code 0.99}
+         * @return The upper bound of the bucket holding that fraction of the
+         *         recorded times, or {@code 0} if nothing was recorded
+         */
+        public long getPercentileUpperBoundNanos(double fraction) {
+            checkArgument(fraction >= 0 && fraction <= 1,
+                    "fraction must be between 0 and 1");
+            if (this.count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * this.count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.buckets[i];
+                if (seen >= rank) {
+                    return getUpperBoundNanos(i);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "LatencyHistogram[count=" + this.count + ",p50<"
+                    + getPercentileUpperBoundNanos(0.5) + "ns,p99<"
+                    + getPercentileUpperBoundNanos(0.99) + "ns]";
+        }
+
+    }
+
+    public static final class LookupStats {
+
+        private final long lookups;
+        private final long hits;
+        private final long cacheHits;
+        private final long candidates;
+        private final LatencyHistogram latency;
+
+        private LookupStats(long lookups, long hits, long cacheHits,
+                long candidates, LatencyHistogram latency) {
+            this.lookups = lookups;
+            this.hits = hits;
+            this.cacheHits = cacheHits;
+            this.candidates = candidates;
+            this.latency = latency;
+        }
+
+        public long getLookups() {
+            return this.lookups;
+        }
+
+        public long getHits() {
+            return this.hits;
+        }
+
+        public long getMisses() {
+            return this.lookups - this.hits;
+        }
+
+        public long getCacheHits() {
+            return this.cacheHits;
+        }
+
+        /**
+         * @return The total number of recipes asked over all lookups
+         */
+        public long getCandidates() {
+            return this.candidates;
+        }
+
+        public LatencyHistogram getLatency() {
+            return this.latency;
+        }
+
+        @Override
+        public String toString() {
+            return "LookupStats[lookups=" + this.lookups + ",hits=" + this.hits
+                    + ",cacheHits=" + this.cacheHits + ",candidates="
+                    + this.candidates + ",latency=" + this.latency + "]";
+        }
+
+    }
+
+    public static final class RecipeStats {
+
+        private final long attempts;
+        private final long hits;
+        private final LatencyHistogram latency;
+
+        private RecipeStats(long attempts, long hits,
+                LatencyHistogram latency) {
+            this.attempts = attempts;
+            this.hits = hits;
+            this.latency = latency;
+        }
+
+        public long getAttempts() {
+            return this.attempts;
+        }
+
+        public long getHits() {
+            return this.hits;
+        }
+
+        public long getMisses() {
+            return this.attempts - this.hits;
+        }
+
+        /**
+         * @return The latencies of this recipe, if they were
+         *         {@link CountingRecipeMetrics#CountingRecipeMetrics(boolean)
+         *         recorded}
+         */
+        public Optional<LatencyHistogram> getLatency() {
+            return Optional.ofNullable(this.latency);
+        }
+
+        @Override
+        public String toString() {
+            return "RecipeStats[attempts=" + this.attempts + ",hits="
+                    + this.hits + (this.latency == null ? ""
+                            : ",latency=" + this.latency)
+                    + "]";
+        }
+
+    }
+
+    public static final class Snapshot {
+
+        private final LookupStats lookups;
+        private final ImmutableMap<Recipe, RecipeStats> recipes;
+
+        private Snapshot(LookupStats lookups,
+                ImmutableMap<Recipe, RecipeStats> recipes) {
+            this.lookups = lookups;
+            this.recipes = recipes;
+        }
+
+        public LookupStats getLookups() {
+            return this.lookups;
+        }
+
+        /**
+         * @return The stats of every recipe that was asked at least once
+         */
+        public ImmutableMap<Recipe, RecipeStats> getRecipes() {
+            return this.recipes;
+        }
+
+    }
+
+    /**
+     * Buckets are only created once a time falls into them; real latencies
+     * rarely spread over more than a handful.
+     */
+    private static final class Histogram {
+
+        private final AtomicReferenceArray<LongAdder> buckets =
+                new AtomicReferenceArray<>(LatencyHistogram.BUCKETS);
+
+        void record(long nanos) {
+            int bucket = nanos <= 0 ? 0
+                    : Math.min(LatencyHistogram.BUCKETS - 1,
+                            64 - Long.numberOfLeadingZeros(nanos));
+            LongAdder adder = this.buckets.get(bucket);
+            if (adder == null) {
+                this.buckets.compareAndSet(bucket, null, new LongAdder());
+                adder = this.buckets.get(bucket);
+            }
+            adder.increment();
+        }
+
+        LatencyHistogram snapshot() {
+            long[] counts = new long[this.buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                LongAdder adder = this.buckets.get(i);
+                counts[i] = adder == null ? 0 : adder.sum();
+            }
+            return new LatencyHistogram(counts);
+        }
+
+    }
+
+    private static final class RecipeCounters {
+
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final Histogram latency;
+
+        RecipeCounters(boolean latency) {
+            this.latency = latency ? new Histogram() : null;
+        }
+
+        RecipeStats snapshot() {
+            // hits first, so that they never exceed the attempts read after
+            long hits = this.hits.sum();
+            return new RecipeStats(Math.max(hits, this.attempts.sum()), hits,
+                    this.latency == null ? null : this.latency.snapshot());
+        }
+
+    }
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final Histogram latency = new Histogram();
+    private final ConcurrentMap<Recipe, RecipeCounters> recipes =
+            new ConcurrentHashMap<>();
+    private final boolean recipeLatency;
+
+    /**
+     * Counts attempts and hits per recipe, but no per-recipe latencies.
+     */
+    public CountingRecipeMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param recipeLatency
+     *            - {@code true} to also keep a latency histogram for every
+     *            recipe
+     */
+    public CountingRecipeMetrics(boolean recipeLatency) {
+        this.recipeLatency = recipeLatency;
+    }
+
+    @Override
+    public void attempt(Recipe recipe, boolean matched, long nanos) {
+        RecipeCounters counters = this.recipes.get(recipe);
+        if (counters == null) {
+            counters = this.recipes.computeIfAbsent(recipe,
+                    k -> new RecipeCounters(this.recipeLatency));
+        }
+        counters.attempts.increment();
+        if (matched) {
+            counters.hits.increment();
+        }
+        if (counters.latency != null) {
+            counters.latency.record(nanos);
+        }
+    }
+
+    @Override
+    public void recipeRemoved(Recipe recipe) {
+        this.recipes.remove(recipe);
+    }
+
+    @Override
+    public void lookup(boolean matched, boolean cached, int candidates,
+            long nanos) {
+        this.lookups.increment();
+        if (matched) {
+            this.hits.increment();
+        }
+        if (cached) {
+            this.cacheHits.increment();
+        }
+        this.candidates.add(candidates);
+        this.latency.record(nanos);
+    }
+
+    /**
+     * Reads the current counts. Lookups that are in progress may be partly
+     * included.
+     */
+    public Snapshot snapshot() {
+        long hits = this.hits.sum();
+        LookupStats lookups = new LookupStats(
+                Math.max(hits, this.lookups.sum()), hits,
+                this.cacheHits.sum(), this.candidates.sum(),
+                this.latency.snapshot());
+        ImmutableMap.Builder<Recipe, RecipeStats> recipes =
+                ImmutableMap.builder();
+        this.recipes.forEach((recipe, counters) -> recipes.put(recipe,
+                counters.snapshot()));
+        return new Snapshot(lookups, recipes.build());
+    }
+
+}
@@ -24,44 +24,215 @@
  */
 package me.kenzierocks.autoergel.recipe;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableList;
 
 import me.kenzierocks.autoergel.osadata.util.Tuple;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
 import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
 
+/**
+ * An immutable snapshot of a crafting grid, as a layout and as a list.
+ * 
+ * <p>
+ * The layout is stored as a single flat array addressed through row and
+ * column strides. Since {@link ItemStackSnapshot snapshots} are immutable the
+ * array is shared between instances, e.g. by {@link #subGrid(int, int, int,
+ * int)}, and is only copied when a modified grid is requested.
+ * </p>
+ * 
+ * <p>
+ * Instances can be shared between threads; everything computed lazily is
+ * published safely. The layout returned by {@link #getAsLayout()} is cached
+ * and shared, so it must not be modified.
+ * </p>
+ */
 public class CraftingData {
 
-    private static ItemStackSnapshot[][]
-            deepCopyGrid(ItemStackSnapshot[][] asLayout) {
-        int len = Stream.of(asLayout).filter(Objects::nonNull)
-                .mapToInt(x -> x.length).findFirst().orElse(0);
-        return Stream.of(asLayout)
-                .map(z -> z == null ? new ItemStackSnapshot[len] : z)
-                .map(x -> Stream.of(x)
-                        .map(z -> Optional.ofNullable(z)
-                                .orElseGet(ItemStackSnapshot::getNoneStack))
-                        .map(ItemStackSnapshot::copy)
-                        .toArray(ItemStackSnapshot[]::new))
-                .toArray(ItemStackSnapshot[][]::new);
+    /**
+     * Takes a snapshot of the slots of {@code inventory}. Slot {@code (x, y)}
+     * is row {@code y}, column {@code x} of the grid.
+     */
+    public static CraftingData of(GridBasedInventory inventory) {
+        int rows = inventory.getHeight();
+        int cols = inventory.getWidth();
+        ItemStackSnapshot[] cells = new ItemStackSnapshot[rows * cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                cells[y * cols + x] = snapshotOf(inventory.getSlot(x, y));
+            }
+        }
+        return new CraftingData(cells, 0, cols, 1, rows, cols, null);
+    }
+
+    /**
+     * Snapshots {@code stack} for a grid cell; {@code null} and empty stacks
+     * become the {@link ItemStackSnapshot#getNoneStack() none stack}.
+     */
+    static ItemStackSnapshot snapshotOf(ItemStack stack) {
+        if (GridSignature.isEmpty(stack)) {
+            return ItemStackSnapshot.getNoneStack();
+        }
+        if (!stack.hasCustomData()) {
+            // plain stacks share pooled snapshots instead of allocating
+            return ItemStackSnapshot.interned(stack.getItem(),
+                    stack.getQuantity(), stack.getDamage());
+        }
+        return stack.createSnapshot();
+    }
+
+    private static ItemStackSnapshot[] flatten(ItemStackSnapshot[][] layout,
+            int rows, int cols) {
+        ItemStackSnapshot none = ItemStackSnapshot.getNoneStack();
+        ItemStackSnapshot[] cells = new ItemStackSnapshot[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            ItemStackSnapshot[] row = layout[r];
+            for (int c = 0; c < cols; c++) {
+                ItemStackSnapshot stack = row == null ? null : row[c];
+                cells[r * cols + c] = stack == null ? none : stack;
+            }
+        }
+        return cells;
+    }
+
+    private static final int[] NO_BOUNDS = {};
+
+    private static int columnCount(ItemStackSnapshot[][] layout) {
+        for (ItemStackSnapshot[] row : layout) {
+            if (row != null) {
+                return row.length;
+            }
+        }
+        return 0;
     }
 
-    private final ItemStackSnapshot[][] asLayout;
-    private final List<ItemStackSnapshot> asList;
-    private transient ItemStackSnapshot[][] cachedCopy;
+    private final ItemStackSnapshot[] cells;
+    private final int offset;
+    private final int rowStride;
+    private final int colStride;
+    private final int rows;
+    private final int cols;
+    private transient List<ItemStackSnapshot> asList;
+    private transient volatile ItemStackSnapshot[][] cachedCopy;
+    private transient int hash;
+    private transient volatile long fingerprint;
+    private transient volatile int[] itemIds;
+    private transient volatile int[] occupiedBounds;
 
     public CraftingData(ItemStackSnapshot[][] asLayout,
             List<ItemStackSnapshot> asList) {
-        this.asLayout = deepCopyGrid(asLayout);
-        this.asList = ImmutableList.copyOf(
-                asList.stream().map(ItemStackSnapshot::copy).iterator());
+        this(asLayout, ImmutableList.copyOf(asList));
+    }
+
+    private CraftingData(ItemStackSnapshot[][] asLayout,
+            ImmutableList<ItemStackSnapshot> asList) {
+        this.rows = asLayout.length;
+        this.cols = columnCount(asLayout);
+        this.cells = flatten(asLayout, this.rows, this.cols);
+        this.offset = 0;
+        this.rowStride = this.cols;
+        this.colStride = 1;
+        this.asList = asList;
+    }
+
+    /**
+     * Shares {@code cells} without copying. A {@code null} list is derived
+     * from the cells on demand.
+     */
+    CraftingData(ItemStackSnapshot[] cells, int offset, int rowStride,
+            int colStride, int rows, int cols,
+            List<ItemStackSnapshot> asList) {
+        this.cells = cells;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        this.rows = rows;
+        this.cols = cols;
+        this.asList = asList;
+    }
+
+    /**
+     * The shared cell array, which must not be modified. Cell {@code (r, c)}
+     * is at {@code offset + r * rowStride + c * colStride}.
+     */
+    ItemStackSnapshot[] getCells() {
+        return this.cells;
+    }
+
+    int getOffset() {
+        return this.offset;
+    }
+
+    int getRowStride() {
+        return this.rowStride;
+    }
+
+    int getColStride() {
+        return this.colStride;
+    }
+
+    /**
+     * The {@link ItemType#getNumericId() numeric ids} of the items in
+     * {@link #getCells()}, resolved once per grid so that matchers compare
+     * ints instead of looking up an id per recipe. Missing cells are
+     * {@link ItemTypeRegistry#UNKNOWN_ID}.
+     */
+    int[] getItemIds() {
+        // racing threads may each resolve the ids, any of them will do
+        int[] ids = this.itemIds;
+        if (ids == null) {
+            ids = new int[this.cells.length];
+            for (int i = 0; i < ids.length; i++) {
+                ItemStackSnapshot cell = this.cells[i];
+                ids[i] = cell == null ? ItemTypeRegistry.UNKNOWN_ID
+                        : cell.getItem().getNumericId();
+            }
+            this.itemIds = ids;
+        }
+        return ids;
+    }
+
+    /**
+     * The bounds of the non-empty cells as {@code minR, maxR, minC, maxC},
+     * or an empty array if every cell is empty. Found once per grid, so that
+     * matching several recipes anywhere in the grid only scans it once.
+     */
+    int[] getOccupiedBounds() {
+        // racing threads may each scan the grid, any result will do
+        int[] bounds = this.occupiedBounds;
+        if (bounds == null) {
+            int minR = this.rows;
+            int maxR = -1;
+            int minC = this.cols;
+            int maxC = -1;
+            for (int r = 0; r < this.rows; r++) {
+                int g = this.offset + r * this.rowStride;
+                for (int c = 0; c < this.cols; c++, g += this.colStride) {
+                    if (!GridSignature.isEmpty(this.cells[g])) {
+                        minR = Math.min(minR, r);
+                        maxR = Math.max(maxR, r);
+                        minC = Math.min(minC, c);
+                        maxC = Math.max(maxC, c);
+                    }
+                }
+            }
+            bounds = maxR < 0 ? NO_BOUNDS
+                    : new int[] { minR, maxR, minC, maxC };
+            this.occupiedBounds = bounds;
+        }
+        return bounds;
+    }
+
+    private int index(int r, int c) {
+        return this.offset + r * this.rowStride + c * this.colStride;
     }
 
     public ItemStackSnapshot[][] getAsLayout() {
@@ -71,82 +242,251 @@ public class CraftingData {
 
     public ItemStackSnapshot[][] getAsLayout(boolean cachedCopy) {
         if (cachedCopy) {
-            if (this.cachedCopy == null) {
-                this.cachedCopy = getAsLayout(false);
+            // racing threads may each build a copy, any of them will do
+            ItemStackSnapshot[][] copy = this.cachedCopy;
+            if (copy == null) {
+                copy = getAsLayout(false);
+                this.cachedCopy = copy;
+            }
+            return copy;
+        }
+        ItemStackSnapshot[][] layout =
+                new ItemStackSnapshot[this.rows][this.cols];
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                layout[r][c] = this.cells[index(r, c)];
+            }
+        }
+        return layout;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Reads a single cell without copying the layout.
+     */
+    public ItemStackSnapshot getStackAt(int r, int c) {
+        return this.cells[index(r, c)];
+    }
+
+    /**
+     * Returns a view of part of this grid. Nothing is copied.
+     */
+    public CraftingData subGrid(int r, int c, int rows, int cols) {
+        checkElementIndex(r, this.rows + 1, "row");
+        checkElementIndex(c, this.cols + 1, "column");
+        checkArgument(rows >= 0 && r + rows <= this.rows,
+                "rows out of bounds");
+        checkArgument(cols >= 0 && c + cols <= this.cols,
+                "columns out of bounds");
+        if (r == 0 && c == 0 && rows == this.rows && cols == this.cols) {
+            return this;
+        }
+        return new CraftingData(this.cells, index(r, c), this.rowStride,
+                this.colStride, rows, cols, null);
+    }
+
+    /**
+     * Returns a grid with a single cell replaced. Only the cell references are
+     * copied.
+     */
+    public CraftingData withStackAt(int r, int c, ItemStackSnapshot stack) {
+        checkElementIndex(r, this.rows, "row");
+        checkElementIndex(c, this.cols, "column");
+        ItemStackSnapshot[] copy = copyCells();
+        copy[r * this.cols + c] =
+                stack == null ? ItemStackSnapshot.getNoneStack() : stack;
+        return new CraftingData(copy, 0, this.cols, 1, this.rows, this.cols,
+                null);
+    }
+
+    /**
+     * Copies the cells of this view into a new row-major array.
+     */
+    private ItemStackSnapshot[] copyCells() {
+        if (this.offset == 0 && this.colStride == 1
+                && this.rowStride == this.cols
+                && this.cells.length == this.rows * this.cols) {
+            return this.cells.clone();
+        }
+        ItemStackSnapshot[] copy = new ItemStackSnapshot[this.rows * this.cols];
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                copy[r * this.cols + c] = this.cells[index(r, c)];
             }
-            return this.cachedCopy;
-        } else {
-            return deepCopyGrid(this.asLayout);
         }
+        return copy;
     }
 
     public List<ItemStackSnapshot> getAsList() {
+        if (this.asList == null) {
+            ImmutableList.Builder<ItemStackSnapshot> list =
+                    ImmutableList.builder();
+            for (int r = 0; r < this.rows; r++) {
+                for (int c = 0; c < this.cols; c++) {
+                    ItemStackSnapshot stack = this.cells[index(r, c)];
+                    if (!GridSignature.isEmpty(stack)) {
+                        list.add(stack);
+                    }
+                }
+            }
+            this.asList = list.build();
+        }
         return this.asList;
     }
 
     public Tuple<List<ItemStackSnapshot>, CraftingData>
             removeStacks(ItemStackSnapshot... stacks) {
-        ItemStackSnapshot[][] layout = getAsLayout();
-        List<ItemStackSnapshot> result =
-                ImmutableList.copyOf(Stream.of(stacks).filter(Objects::nonNull)
-                        .map(ItemStackSnapshot::copy).map(x -> {
-                            if (x == null || x.getQuantity() <= 0) {
-                                return null;
-                            }
-                            // For every stack2remove (S2R)
-                            everything: for (int r =
-                                    0; r < layout.length; r++) {
-                                for (int c = 0; c < layout[0].length; c++) {
-                                    ItemStackSnapshot atPos = layout[r][c];
-                                    // Get the stack in inventory (SII)
-                                    if (atPos != null
-                                            && atPos.equalIgnoringSize(x)) {
-                                        while (atPos != null) {
-                                            // Reduce the quantity, slowly
-                                            x = x.withQuantityChange(-1);
-                                            atPos = atPos
-                                                    .withQuantityChange(-1);
-                                            if (atPos.getQuantity() == 0) {
-                                                atPos = null;
-                                            }
-                                            if (x.getQuantity() == 0) {
-                                                break everything;
-                                            }
-                                        }
-                                    }
-                                    // Set back stack
-                                    layout[r][c] = atPos;
-                                }
-                            }
-                            return x.getQuantity() <= 0 ? null : x;
-                        }).filter(Objects::nonNull).iterator());
-        return Tuple.of(result, this.withLayout(layout));
+        return removeStacks(Arrays.asList(stacks));
+    }
+
+    /**
+     * Removes all of {@code stacks} from the grid in a single pass over the
+     * layout. Each cell is drained by the stacks in the given order, so
+     * earlier stacks are satisfied first.
+     * 
+     * @return The leftovers of {@code stacks} that could not be removed, and
+     *         the grid with the removed items taken out
+     */
+    public Tuple<List<ItemStackSnapshot>, CraftingData>
+            removeStacks(Collection<ItemStackSnapshot> stacks) {
+        ItemStackSnapshot[] toRemove = stacks.stream()
+                .filter(x -> x != null && x.getQuantity() > 0)
+                .toArray(ItemStackSnapshot[]::new);
+        int[] remaining = new int[toRemove.length];
+        for (int i = 0; i < toRemove.length; i++) {
+            remaining[i] = toRemove[i].getQuantity();
+        }
+        ItemStackSnapshot[] copy = null;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                ItemStackSnapshot atPos = this.cells[index(r, c)];
+                if (GridSignature.isEmpty(atPos)) {
+                    continue;
+                }
+                int left = atPos.getQuantity();
+                for (int i = 0; i < toRemove.length && left > 0; i++) {
+                    if (remaining[i] > 0
+                            && atPos.equalIgnoringSize(toRemove[i])) {
+                        int taken = Math.min(left, remaining[i]);
+                        remaining[i] -= taken;
+                        left -= taken;
+                    }
+                }
+                if (left != atPos.getQuantity()) {
+                    if (copy == null) {
+                        copy = copyCells();
+                    }
+                    copy[r * this.cols + c] = left == 0
+                            ? ItemStackSnapshot.getNoneStack()
+                            : atPos.withQuantity(left);
+                }
+            }
+        }
+        ImmutableList.Builder<ItemStackSnapshot> leftovers =
+                ImmutableList.builder();
+        for (int i = 0; i < toRemove.length; i++) {
+            if (remaining[i] == toRemove[i].getQuantity()) {
+                leftovers.add(toRemove[i]);
+            } else if (remaining[i] > 0) {
+                leftovers.add(toRemove[i].withQuantity(remaining[i]));
+            }
+        }
+        CraftingData result = copy == null ? this
+                : new CraftingData(copy, 0, this.cols, 1, this.rows,
+                        this.cols, null);
+        return Tuple.of(leftovers.build(), result);
     }
 
     public CraftingData withLayout(ItemStackSnapshot[][] layout) {
-        List<ItemStackSnapshot> list = Stream.of(layout).flatMap(Stream::of)
-                .filter(Objects::nonNull).collect(Collectors.toList());
-        return new CraftingData(layout, list);
+        int cols = columnCount(layout);
+        return new CraftingData(flatten(layout, layout.length, cols), 0, cols,
+                1, layout.length, cols, null);
     }
 
     public CraftingData withList(List<ItemStackSnapshot> list) {
-        ItemStackSnapshot[][] layout = getAsLayout();
+        ItemStackSnapshot[] copy = copyCells();
         Iterator<ItemStackSnapshot> iter = list.iterator();
-        for (int r = 0; r < layout.length && iter.hasNext(); r++) {
-            for (int c = 0; c < layout[0].length && iter.hasNext(); c++) {
-                layout[r][c] = iter.next();
+        for (int i = 0; i < copy.length && iter.hasNext(); i++) {
+            copy[i] = iter.next();
+        }
+        return new CraftingData(copy, 0, this.cols, 1, this.rows, this.cols,
+                ImmutableList.copyOf(list));
+    }
+
+    /**
+     * A 64-bit hash of the items in this grid, their damage and data, and
+     * where they are. Quantities are ignored, since they don't decide which
+     * recipe matches. The fingerprint is computed once.
+     */
+    public long getFingerprint() {
+        long fingerprint = this.fingerprint;
+        if (fingerprint == 0) {
+            fingerprint = computeFingerprint();
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    private long computeFingerprint() {
+        final long prime = 0x9E3779B97F4A7C15L;
+        long result = this.rows * prime + this.cols;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                result = prime * result
+                        + stackFingerprint(this.cells[index(r, c)]);
             }
         }
-        return new CraftingData(layout, list);
+        List<ItemStackSnapshot> list = getAsList();
+        for (int i = 0; i < list.size(); i++) {
+            result = prime * result + stackFingerprint(list.get(i));
+        }
+        // murmur3 finalizer, spreads the bits over the whole long
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    private static long stackFingerprint(ItemStackSnapshot stack) {
+        if (GridSignature.isEmpty(stack)) {
+            return 0;
+        }
+        long result = stack.getItem().hashCode();
+        result = 31 * result + stack.getDamage();
+        result = 31 * result + stack.getDataHash();
+        return result;
     }
 
     @Override
     public int hashCode() {
+        int hash = this.hash;
+        if (hash == 0) {
+            hash = computeHashCode();
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    private int computeHashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.deepHashCode(this.asLayout);
-        result = prime * result
-                + ((this.asList == null) ? 0 : this.asList.hashCode());
+        result = prime * result + this.rows;
+        result = prime * result + this.cols;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                result = prime * result + this.cells[index(r, c)].hashCode();
+            }
+        }
+        result = prime * result + getAsList().hashCode();
         return result;
     }
 
@@ -162,23 +502,25 @@ public class CraftingData {
             return false;
         }
         CraftingData other = (CraftingData) obj;
-        if (!Arrays.deepEquals(this.asLayout, other.asLayout)) {
+        if (this.rows != other.rows || this.cols != other.cols) {
             return false;
         }
-        if (this.asList == null) {
-            if (other.asList != null) {
-                return false;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                if (!this.cells[index(r, c)]
+                        .equals(other.cells[other.index(r, c)])) {
+                    return false;
+                }
             }
-        } else if (!this.asList.equals(other.asList)) {
-            return false;
         }
-        return true;
+        return getAsList().equals(other.getAsList());
     }
 
     @Override
     public String toString() {
-        return "CraftingData[asLayout=" + Arrays.deepToString(this.asLayout)
-                + ",asList=" + this.asList + "]";
+        return "CraftingData[asLayout="
+                + Arrays.deepToString(getAsLayout(false)) + ",asList="
+                + getAsList() + "]";
     }
 
 }
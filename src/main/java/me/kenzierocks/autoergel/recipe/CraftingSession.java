@@ -0,0 +1,229 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+import me.kenzierocks.autoergel.recipe.RecipeIndex.Entry;
+import me.kenzierocks.autoergel.recipe.RecipeIndex.Match;
+
+/**
+ * Tracks the recipe matching a {@link GridBasedInventory} as its slots change,
+ * without re-reading the whole inventory for every change.
+ * 
+ * <p>
+ * The session keeps the set of candidate recipes for the current grid and
+ * which of them matches. Changes are reported through
+ * {@link #slotChanged(int, int, ItemStack)} and only mark what they
+ * invalidate; matching happens when the recipe or result is asked for, so a
+ * burst of changes costs one lookup.
+ * </p>
+ * 
+ * <p>
+ * Candidates are the recipes using exactly the item types in the grid. For
+ * every recipe the session counts how many of the grid's item types it uses,
+ * and a slot change only updates the counts of the recipes that depend on the
+ * slot's old or new item type, and only when that type enters or leaves the
+ * grid. A change that keeps the set of item types, such as a quantity change
+ * or moving an item between slots, keeps the candidate set, and only the
+ * candidates are asked again. Registering or removing recipes recounts the
+ * whole grid.
+ * </p>
+ * 
+ * <p>
+ * Slot {@code (x, y)} of the inventory is row {@code y}, column {@code x} of
+ * the grid. Sessions are not thread-safe.
+ * </p>
+ */
+public final class CraftingSession {
+
+    private static ItemType typeOf(ItemStackSnapshot stack) {
+        return GridSignature.isEmpty(stack) ? null : stack.getItem();
+    }
+
+    private final RecipeManager manager;
+    private final GridBasedInventory inventory;
+    private final int rows;
+    private final int cols;
+    private ItemStackSnapshot[] cells;
+    /**
+     * {@code true} while {@link #data} shares {@link #cells}; the next change
+     * has to copy them first.
+     */
+    private boolean shared;
+    private CraftingData data;
+    /**
+     * The number of slots holding each item type.
+     */
+    private final Multiset<ItemType> types = HashMultiset.create();
+    private RecipeIndex index;
+    /**
+     * For each recipe of {@link #index}, how many of {@link #types} it uses.
+     */
+    private int[] covered;
+    /**
+     * {@code null} when the item types in the grid changed since they were
+     * collected.
+     */
+    private Entry[] candidates;
+    private boolean matchStale = true;
+    private Match match;
+
+    CraftingSession(RecipeManager manager, GridBasedInventory inventory) {
+        this.manager = manager;
+        this.inventory = inventory;
+        this.rows = inventory.getHeight();
+        this.cols = inventory.getWidth();
+        this.cells = new ItemStackSnapshot[this.rows * this.cols];
+        refresh();
+    }
+
+    public GridBasedInventory getInventory() {
+        return this.inventory;
+    }
+
+    /**
+     * Re-reads every slot of the inventory.
+     */
+    public void refresh() {
+        unshare();
+        this.types.clear();
+        for (int y = 0; y < this.rows; y++) {
+            for (int x = 0; x < this.cols; x++) {
+                ItemStackSnapshot snapshot =
+                        CraftingData.snapshotOf(this.inventory.getSlot(x, y));
+                this.cells[y * this.cols + x] = snapshot;
+                ItemType type = typeOf(snapshot);
+                if (type != null) {
+                    this.types.add(type);
+                }
+            }
+        }
+        this.data = null;
+        // recount against the index on the next lookup
+        this.index = null;
+        this.matchStale = true;
+    }
+
+    /**
+     * Records that slot {@code (x, y)} now holds {@code newStack}.
+     */
+    public void slotChanged(int x, int y, ItemStack newStack) {
+        checkElementIndex(x, this.cols, "x");
+        checkElementIndex(y, this.rows, "y");
+        ItemStackSnapshot snapshot = CraftingData.snapshotOf(newStack);
+        int i = y * this.cols + x;
+        ItemStackSnapshot old = this.cells[i];
+        unshare();
+        this.cells[i] = snapshot;
+        this.data = null;
+        this.matchStale = true;
+        ItemType oldType = typeOf(old);
+        ItemType newType = typeOf(snapshot);
+        if (!Objects.equals(oldType, newType)) {
+            if (oldType != null && this.types.remove(oldType, 1) == 1) {
+                typeCountChanged(oldType, -1);
+            }
+            if (newType != null && this.types.add(newType, 1) == 0) {
+                typeCountChanged(newType, 1);
+            }
+        }
+    }
+
+    /**
+     * Records that {@code type} entered or left the grid, in the counts of
+     * the recipes that use it.
+     */
+    private void typeCountChanged(ItemType type, int delta) {
+        this.candidates = null;
+        if (this.index != null) {
+            for (int p : this.index.usedBy(type)) {
+                this.covered[p] += delta;
+            }
+        }
+    }
+
+    private void unshare() {
+        if (this.shared) {
+            this.cells = this.cells.clone();
+            this.shared = false;
+        }
+    }
+
+    /**
+     * @return The current contents of the grid
+     */
+    public CraftingData getData() {
+        if (this.data == null) {
+            this.data = new CraftingData(this.cells, 0, this.cols, 1,
+                    this.rows, this.cols, null);
+            this.shared = true;
+        }
+        return this.data;
+    }
+
+    private Match getMatch() {
+        RecipeIndex index = this.manager.getIndex();
+        if (index != this.index) {
+            this.index = index;
+            this.covered = new int[index.getEntries().size()];
+            for (ItemType type : this.types.elementSet()) {
+                for (int p : index.usedBy(type)) {
+                    this.covered[p]++;
+                }
+            }
+            this.candidates = null;
+        }
+        if (this.candidates == null) {
+            this.candidates =
+                    index.candidates(this.types.elementSet(), this.covered);
+            this.matchStale = true;
+        }
+        if (this.matchStale) {
+            this.match =
+                    this.manager.findMatch(index, this.candidates, getData());
+            this.matchStale = false;
+        }
+        return this.match;
+    }
+
+    public Optional<Recipe> getRecipe() {
+        return Optional.ofNullable(getMatch()).map(m -> m.entry.recipe);
+    }
+
+    public Optional<ItemStackSnapshot> getResult() {
+        return Optional.ofNullable(getMatch()).map(m -> m.result);
+    }
+
+}
@@ -26,10 +26,14 @@ package me.kenzierocks.autoergel.recipe;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
 import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
@@ -46,6 +50,11 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
 
         SUBTYPE result(ItemStackSnapshot stack);
 
+        /**
+         * Allows the recipe to also match its horizontal mirror image.
+         */
+        SUBTYPE mirrored(boolean mirrored);
+
         SUBTYPE duplicate();
 
         DefaultShapedRecipe build();
@@ -59,6 +68,7 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
                 new HashMap<>();
         protected final ItemStackSnapshot[][] layout = createLayout();
         protected ItemStackSnapshot result;
+        protected boolean mirrored;
 
         {
             checkLayout();
@@ -84,7 +94,8 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
         @Override
         public SUBTYPE link(char character, ItemStack stack) {
             return link(character, Optional.ofNullable(stack)
-                    .map(ItemStack::createSnapshot).orElse(null));
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
         }
 
         @Override
@@ -97,7 +108,8 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
         @Override
         public SUBTYPE result(ItemStack result) {
             return result(Optional.ofNullable(result)
-                    .map(ItemStack::createSnapshot).orElse(null));
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
         }
 
         @Override
@@ -107,21 +119,31 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
             return $this();
         }
 
+        @Override
+        public SUBTYPE mirrored(boolean mirrored) {
+            this.mirrored = mirrored;
+            return $this();
+        }
+
         @Override
         public DefaultShapedRecipe build() {
             // just in case idiots replace it later...
             checkLayout();
             checkNotNull(this.result, "result was not set");
-            return new DefaultShapedRecipe(this.layout, this.result);
+            return new DefaultShapedRecipe(this.layout, this.result,
+                    this.mirrored);
         }
 
         @Override
         public SUBTYPE duplicate() {
             SUBTYPE n = createNew();
             n.links.putAll(this.links);
-            n.result(this.result.createStack());
+            // snapshots are immutable, only the rows need copying
+            n.result = this.result;
+            n.mirrored(this.mirrored);
             for (int i = 0; i < this.layout.length; i++) {
-                n.layout[i] = this.layout[i];
+                System.arraycopy(this.layout[i], 0, n.layout[i], 0,
+                        this.layout[i].length);
             }
             return n;
         }
@@ -220,17 +242,182 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
 
     }
 
+    /**
+     * Builds a recipe of any size from rows of characters, e.g.
+     * 
+     * <pre>
+     * PatternBuilder.start(result)
+     *         .pattern("  #  ",
+     *                  " ### ",
+     *                  "#####")
+     *         .link('#', stone)
+     *         .build();
+     * </pre>
+     * 
+     * <p>
+     * Characters are resolved when the recipe is built, so links may be given
+     * before or after the pattern. {@code ' '} is linked to the
+     * {@link ItemStackSnapshot#getNoneStack() none stack} unless it is
+     * relinked. Rows and columns that only hold empty stacks around the shape
+     * are stripped from the built layout.
+     * </p>
+     */
+    public static final class PatternBuilder
+            implements BoxBuilder<PatternBuilder> {
+
+        public static PatternBuilder start(ItemStack result) {
+            return new PatternBuilder().result(result);
+        }
+
+        public static PatternBuilder start(ItemStackSnapshot result) {
+            return new PatternBuilder().result(result);
+        }
+
+        private final Map<Character, ItemStackSnapshot> links =
+                new HashMap<>();
+        private String[] pattern;
+        private ItemStackSnapshot result;
+        private boolean mirrored;
+
+        private PatternBuilder() {
+            link(' ', ItemStackSnapshot.getNoneStack());
+        }
+
+        /**
+         * @param rows
+         *            - the rows of the layout, top first; all must have the
+         *            same length
+         */
+        public PatternBuilder pattern(String... rows) {
+            checkNotNull(rows, "rows cannot be null");
+            checkArgument(rows.length != 0, "Cannot have 0 rows");
+            checkNotNull(rows[0], "row 0 cannot be null");
+            int cols = rows[0].length();
+            checkArgument(cols != 0, "Cannot have 0 columns");
+            for (int r = 0; r < rows.length; r++) {
+                checkNotNull(rows[r], "row %s cannot be null", r);
+                checkArgument(rows[r].length() == cols,
+                        "non-rectangular pattern");
+            }
+            this.pattern = rows.clone();
+            return this;
+        }
+
+        @Override
+        public PatternBuilder link(char character, ItemStack stack) {
+            return link(character, Optional.ofNullable(stack)
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
+        }
+
+        @Override
+        public PatternBuilder link(char character, ItemStackSnapshot stack) {
+            checkNotNull(stack, "linked stack cannot be null");
+            this.links.put(character, stack);
+            return this;
+        }
+
+        @Override
+        public PatternBuilder result(ItemStack result) {
+            return result(Optional.ofNullable(result)
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
+        }
+
+        @Override
+        public PatternBuilder result(ItemStackSnapshot result) {
+            checkNotNull(result, "result cannot be null");
+            this.result = result;
+            return this;
+        }
+
+        @Override
+        public PatternBuilder mirrored(boolean mirrored) {
+            this.mirrored = mirrored;
+            return this;
+        }
+
+        @Override
+        public PatternBuilder duplicate() {
+            PatternBuilder n = new PatternBuilder();
+            n.links.putAll(this.links);
+            // strings and snapshots are immutable
+            n.pattern = this.pattern;
+            n.result = this.result;
+            n.mirrored = this.mirrored;
+            return n;
+        }
+
+        @Override
+        public DefaultShapedRecipe build() {
+            checkState(this.pattern != null, "pattern was not set");
+            checkNotNull(this.result, "result was not set");
+            int rows = this.pattern.length;
+            int cols = this.pattern[0].length();
+            ItemStackSnapshot[][] layout = new ItemStackSnapshot[rows][cols];
+            int minR = rows;
+            int maxR = -1;
+            int minC = cols;
+            int maxC = -1;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    char character = this.pattern[r].charAt(c);
+                    ItemStackSnapshot stack = this.links.get(character);
+                    checkState(stack != null, "'%s' is not linked",
+                            character);
+                    layout[r][c] = stack;
+                    if (!GridSignature.isEmpty(stack)) {
+                        minR = Math.min(minR, r);
+                        maxR = Math.max(maxR, r);
+                        minC = Math.min(minC, c);
+                        maxC = Math.max(maxC, c);
+                    }
+                }
+            }
+            checkState(maxR >= 0, "pattern has no ingredients");
+            ItemStackSnapshot[][] trimmed =
+                    new ItemStackSnapshot[maxR - minR + 1][];
+            for (int r = 0; r < trimmed.length; r++) {
+                trimmed[r] = Arrays.copyOfRange(layout[r + minR], minC,
+                        maxC + 1);
+            }
+            return new DefaultShapedRecipe(trimmed, this.result,
+                    this.mirrored);
+        }
+
+    }
+
     private final ItemStackSnapshot[][] layout;
     private final ItemStackSnapshot result;
+    private final boolean mirrored;
     private final transient int rows;
     private final transient int cols;
-
-    private DefaultShapedRecipe(ItemStackSnapshot[][] layout,
-            ItemStackSnapshot result) {
-        this.layout = layout;
+    /**
+     * The compiled layout, followed by its mirror image if that matches
+     * different grids.
+     */
+    private final transient ShapeMatcher[] matchers;
+
+    DefaultShapedRecipe(ItemStackSnapshot[][] layout,
+            ItemStackSnapshot result, boolean mirrored) {
+        // the builder may keep going, don't share its rows
+        this.layout = Stream.of(layout).map(ItemStackSnapshot[]::clone)
+                .toArray(ItemStackSnapshot[][]::new);
+        checkArgument(this.layout.length != 0 && this.layout[0].length != 0,
+                "empty layout");
+        checkArgument(
+                Stream.of(this.layout).flatMap(Stream::of)
+                        .anyMatch(stack -> !GridSignature.isEmpty(stack)),
+                "layout has no ingredients");
         this.result = result;
+        this.mirrored = mirrored;
         this.rows = this.layout.length;
         this.cols = this.layout[0].length;
+        ShapeMatcher matcher = new ShapeMatcher(this, false);
+        ShapeMatcher mirror = mirrored ? new ShapeMatcher(this, true) : null;
+        this.matchers = mirror == null || mirror.sameShape(matcher)
+                ? new ShapeMatcher[] { matcher }
+                : new ShapeMatcher[] { matcher, mirror };
     }
 
     @Override
@@ -253,4 +440,64 @@ public final class DefaultShapedRecipe implements ShapedRecipe.SingleOutput {
         return this.result;
     }
 
-}
\ No newline at end of file
+    public boolean isMirrored() {
+        return this.mirrored;
+    }
+
+    /**
+     * Matches if the occupied cells of {@code data} form this recipe's shape,
+     * or its mirror image if {@link #isMirrored() mirrored}, anywhere in the
+     * grid.
+     */
+    @Override
+    public Optional<ItemStackSnapshot> tryToApplyRecipe(CraftingData data) {
+        for (ShapeMatcher matcher : this.matchers) {
+            if (matcher.matches(data)) {
+                return Optional.of(this.result);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Same as {@code tryToApplyRecipe(data).isPresent()}, where {@code data}
+     * holds the slots of {@code inventory}, but without taking snapshots of
+     * plain stacks.
+     */
+    boolean matches(GridBasedInventory inventory) {
+        for (ShapeMatcher matcher : this.matchers) {
+            if (matcher.matches(inventory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int maxApplications(CraftingData data) {
+        for (ShapeMatcher matcher : this.matchers) {
+            int max = matcher.maxApplications(data);
+            if (max > 0) {
+                return max;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public CraftingData applyN(CraftingData data, int times,
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        checkArgument(times >= 0, "times cannot be negative");
+        if (times == 0) {
+            return data;
+        }
+        for (ShapeMatcher matcher : this.matchers) {
+            if (matcher.maxApplications(data) >= times) {
+                return matcher.applyN(data, times, getContainerItem);
+            }
+        }
+        throw new IllegalArgumentException(
+                "Cannot apply " + times + " time" + (times == 1 ? "" : "s"));
+    }
+
+}
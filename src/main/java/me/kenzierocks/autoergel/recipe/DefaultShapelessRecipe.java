@@ -0,0 +1,234 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+/**
+ * A {@link ShapelessRecipe} whose ingredients are grouped into kinds when it is
+ * built, so matching is one pass over {@link CraftingData#getAsList()} that
+ * counts the stacks of each kind.
+ */
+public final class DefaultShapelessRecipe
+        implements ShapelessRecipe.SingleOutput {
+
+    public static final class Builder {
+
+        public static Builder start(ItemStack result) {
+            return new Builder().result(result);
+        }
+
+        private final List<ItemStackSnapshot> ingredients = new ArrayList<>();
+        private ItemStackSnapshot result;
+
+        private Builder() {
+        }
+
+        public Builder ingredient(ItemStack stack) {
+            return ingredient(Optional.ofNullable(stack)
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
+        }
+
+        public Builder ingredient(ItemStackSnapshot stack) {
+            checkNotNull(stack, "ingredient cannot be null");
+            checkArgument(!GridSignature.isEmpty(stack),
+                    "ingredient cannot be empty");
+            this.ingredients.add(stack);
+            return this;
+        }
+
+        public Builder result(ItemStack result) {
+            return result(Optional.ofNullable(result)
+                    .map(ItemStack::createSnapshot)
+                    .map(ItemStackSnapshot::intern).orElse(null));
+        }
+
+        public Builder result(ItemStackSnapshot result) {
+            checkNotNull(result, "result cannot be null");
+            this.result = result;
+            return this;
+        }
+
+        public Builder duplicate() {
+            Builder n = new Builder();
+            n.ingredients.addAll(this.ingredients);
+            n.result = this.result;
+            return n;
+        }
+
+        public DefaultShapelessRecipe build() {
+            checkNotNull(this.result, "result was not set");
+            return new DefaultShapelessRecipe(this.ingredients, this.result);
+        }
+
+    }
+
+    /**
+     * The ingredients, ordered by kind.
+     */
+    private final ImmutableList<ItemStackSnapshot> ingredients;
+    private final ItemStackSnapshot result;
+    /**
+     * One representative per kind of ingredient.
+     */
+    private final transient CompiledStacks kinds;
+    /**
+     * The first index into {@link #ingredients} of each kind.
+     */
+    private final transient int[] start;
+    private final transient int[] counts;
+    private final transient int[] required;
+
+    DefaultShapelessRecipe(List<ItemStackSnapshot> ingredients,
+            ItemStackSnapshot result) {
+        checkArgument(!ingredients.isEmpty(), "no ingredients");
+        List<ItemStackSnapshot> kinds = new ArrayList<>();
+        List<List<ItemStackSnapshot>> byKind = new ArrayList<>();
+        ingredients: for (ItemStackSnapshot ingredient : ingredients) {
+            for (int k = 0; k < kinds.size(); k++) {
+                if (kinds.get(k).equalIgnoringSize(ingredient)) {
+                    checkArgument(
+                            kinds.get(k).getQuantity() == ingredient
+                                    .getQuantity(),
+                            "ingredients of the same kind must use the same quantity");
+                    byKind.get(k).add(ingredient);
+                    continue ingredients;
+                }
+            }
+            kinds.add(ingredient);
+            List<ItemStackSnapshot> kind = new ArrayList<>();
+            kind.add(ingredient);
+            byKind.add(kind);
+        }
+        ImmutableList.Builder<ItemStackSnapshot> ordered =
+                ImmutableList.builder();
+        this.start = new int[kinds.size()];
+        this.counts = new int[kinds.size()];
+        this.required = new int[kinds.size()];
+        int next = 0;
+        for (int k = 0; k < kinds.size(); k++) {
+            ordered.addAll(byKind.get(k));
+            this.start[k] = next;
+            this.counts[k] = byKind.get(k).size();
+            this.required[k] = Math.max(1, kinds.get(k).getQuantity());
+            next += this.counts[k];
+        }
+        this.ingredients = ordered.build();
+        this.result = result;
+        this.kinds = new CompiledStacks(
+                kinds.toArray(new ItemStackSnapshot[kinds.size()]));
+    }
+
+    @Override
+    public List<ItemStackSnapshot> getIngredients() {
+        return this.ingredients;
+    }
+
+    @Override
+    public ItemStackSnapshot getOutput() {
+        return this.result;
+    }
+
+    @Override
+    public int getRequiredQuantity(int ingredient) {
+        for (int k = this.start.length - 1;; k--) {
+            if (this.start[k] <= ingredient) {
+                return this.required[k];
+            }
+        }
+    }
+
+    @Override
+    public int[] pairIngredients(List<ItemStackSnapshot> stacks) {
+        int[] pairs = new int[this.ingredients.size()];
+        int[] seen = new int[this.counts.length];
+        int occupied = 0;
+        for (int j = 0; j < stacks.size(); j++) {
+            ItemStackSnapshot stack = stacks.get(j);
+            if (GridSignature.isEmpty(stack)) {
+                continue;
+            }
+            int k = this.kinds.indexOf(stack);
+            if (k < 0 || seen[k] == this.counts[k]) {
+                return null;
+            }
+            pairs[this.start[k] + seen[k]++] = j;
+            occupied++;
+        }
+        return occupied == pairs.length ? pairs : null;
+    }
+
+    @Override
+    public Optional<ItemStackSnapshot> tryToApplyRecipe(CraftingData data) {
+        if (match(data) < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(this.result);
+    }
+
+    @Override
+    public int maxApplications(CraftingData data) {
+        return Math.max(0, match(data));
+    }
+
+    /**
+     * Matches the stacks of {@code data} in one pass.
+     * 
+     * @return The number of possible applications, or {@code -1} if the
+     *         stacks don't match
+     */
+    private int match(CraftingData data) {
+        List<ItemStackSnapshot> stacks = data.getAsList();
+        int[] seen = new int[this.counts.length];
+        int occupied = 0;
+        int max = Integer.MAX_VALUE;
+        for (int j = 0; j < stacks.size(); j++) {
+            ItemStackSnapshot stack = stacks.get(j);
+            if (GridSignature.isEmpty(stack)) {
+                continue;
+            }
+            int k = this.kinds.indexOf(stack);
+            if (k < 0 || seen[k] == this.counts[k]) {
+                return -1;
+            }
+            seen[k]++;
+            occupied++;
+            max = Math.min(max, stack.getQuantity() / this.required[k]);
+        }
+        return occupied == this.ingredients.size() ? max : -1;
+    }
+
+}
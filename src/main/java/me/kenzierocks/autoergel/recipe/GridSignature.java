@@ -0,0 +1,220 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import java.util.List;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * Cheap features of a grid, used by {@link RecipeManager} to narrow down the
+ * recipes that could possibly match it. Two grids with different signatures
+ * can never be matched by the same shaped recipe, but equal signatures do not
+ * guarantee a match.
+ * 
+ * <p>
+ * Signatures only look at the occupied cells, so they don't depend on where
+ * the shape is in the grid. They also don't change when the shape is mirrored
+ * horizontally, so that a mirrored recipe only needs one signature.
+ * </p>
+ */
+final class GridSignature {
+
+    private interface CellSource {
+
+        /**
+         * @return The item at the cell, or {@code null} if it is empty
+         */
+        ItemType at(int r, int c);
+
+    }
+
+    static final GridSignature EMPTY = new GridSignature(0, 0, 0, 0);
+
+    static boolean isEmpty(ItemStackSnapshot stack) {
+        return stack == null || stack == ItemStackSnapshot.getNoneStack()
+                || stack.getItem().equals(ItemType.NONE);
+    }
+
+    static boolean isEmpty(ItemStack stack) {
+        return stack == null || stack.getItem().equals(ItemType.NONE);
+    }
+
+    private static ItemType itemOf(ItemStackSnapshot stack) {
+        return isEmpty(stack) ? null : stack.getItem();
+    }
+
+    private static ItemType itemOf(ItemStack stack) {
+        return isEmpty(stack) ? null : stack.getItem();
+    }
+
+    /**
+     * Order-independent contribution of a single item to the multiset hash.
+     */
+    static int itemHash(ItemType type) {
+        int h = type.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Key for the multiset of items in {@code stacks}, ignoring empty stacks.
+     * This is what {@link ShapelessRecipe shapeless recipes} are indexed by.
+     */
+    static long ingredientsKey(List<ItemStackSnapshot> stacks) {
+        int count = 0;
+        int items = 0;
+        for (int i = 0; i < stacks.size(); i++) {
+            ItemStackSnapshot stack = stacks.get(i);
+            if (!isEmpty(stack)) {
+                count++;
+                items += itemHash(stack.getItem());
+            }
+        }
+        return ((long) count << 32) | (items & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Same as {@link #ingredientsKey(List)} for the slots of
+     * {@code inventory}.
+     */
+    static long ingredientsKey(GridBasedInventory inventory) {
+        int count = 0;
+        int items = 0;
+        for (int y = 0; y < inventory.getHeight(); y++) {
+            for (int x = 0; x < inventory.getWidth(); x++) {
+                ItemStack stack = inventory.getSlot(x, y);
+                if (!isEmpty(stack)) {
+                    count++;
+                    items += itemHash(stack.getItem());
+                }
+            }
+        }
+        return ((long) count << 32) | (items & 0xFFFFFFFFL);
+    }
+
+    static GridSignature of(ShapedRecipe recipe) {
+        return of(recipe.getRows(), recipe.getCols(),
+                (r, c) -> itemOf(recipe.getStackAt(r, c)));
+    }
+
+    static GridSignature of(CraftingData data) {
+        return of(data.getRows(), data.getCols(),
+                (r, c) -> itemOf(data.getStackAt(r, c)));
+    }
+
+    /**
+     * Slot {@code (x, y)} is row {@code y}, column {@code x}.
+     */
+    static GridSignature of(GridBasedInventory inventory) {
+        return of(inventory.getHeight(), inventory.getWidth(),
+                (r, c) -> itemOf(inventory.getSlot(c, r)));
+    }
+
+    private static GridSignature of(int rows, int cols, CellSource cells) {
+        int minR = rows;
+        int maxR = -1;
+        int minC = cols;
+        int maxC = -1;
+        int items = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                ItemType item = cells.at(r, c);
+                if (item == null) {
+                    continue;
+                }
+                minR = Math.min(minR, r);
+                maxR = Math.max(maxR, r);
+                minC = Math.min(minC, c);
+                maxC = Math.max(maxC, c);
+                items += itemHash(item);
+            }
+        }
+        if (maxR < 0) {
+            return EMPTY;
+        }
+        int height = maxR - minR + 1;
+        int width = maxC - minC + 1;
+        // Grids larger than 64 cells fold onto the same bits; that only costs
+        // a few extra candidates.
+        long mask = 0;
+        long mirrorMask = 0;
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                if (cells.at(r + minR, c + minC) != null) {
+                    mask |= 1L << (r * width + c);
+                    mirrorMask |= 1L << (r * width + width - 1 - c);
+                }
+            }
+        }
+        return new GridSignature(height, width, Math.min(mask, mirrorMask),
+                items);
+    }
+
+    private final int rows;
+    private final int cols;
+    private final long mask;
+    private final int itemHash;
+
+    private GridSignature(int rows, int cols, long mask, int itemHash) {
+        this.rows = rows;
+        this.cols = cols;
+        this.mask = mask;
+        this.itemHash = itemHash;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.rows;
+        result = prime * result + this.cols;
+        result = prime * result + Long.hashCode(this.mask);
+        result = prime * result + this.itemHash;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GridSignature)) {
+            return false;
+        }
+        GridSignature other = (GridSignature) obj;
+        return this.rows == other.rows && this.cols == other.cols
+                && this.mask == other.mask && this.itemHash == other.itemHash;
+    }
+
+    @Override
+    public String toString() {
+        return "GridSignature[rows=" + this.rows + ",cols=" + this.cols
+                + ",mask=" + Long.toHexString(this.mask) + ",itemHash="
+                + Integer.toHexString(this.itemHash) + "]";
+    }
+
+}
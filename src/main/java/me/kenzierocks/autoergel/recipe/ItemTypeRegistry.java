@@ -0,0 +1,154 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * An immutable, dense numbering of item types. {@link ItemType#NONE} is always
+ * {@link #NONE_ID}, the remaining types follow in registration order, so ids
+ * can index plain arrays in both directions.
+ * 
+ * <p>
+ * Registries only ever grow: {@link #extendedWith(Iterable)} keeps every
+ * existing id and appends new types, so ids embedded in matchers stay valid
+ * after {@link #refresh()}.
+ * </p>
+ */
+public final class ItemTypeRegistry {
+
+    public static final int NONE_ID = 0;
+
+    /**
+     * Returned for types that are not part of a registry.
+     */
+    public static final int UNKNOWN_ID = -1;
+
+    private static volatile ItemTypeRegistry current;
+
+    /**
+     * @return The registry of {@link ItemType.Provider#INSTANCE}
+     */
+    public static ItemTypeRegistry current() {
+        ItemTypeRegistry registry = current;
+        if (registry == null) {
+            synchronized (ItemTypeRegistry.class) {
+                registry = current;
+                if (registry == null) {
+                    registry = ItemType.Provider.INSTANCE.createRegistry();
+                    current = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Assigns ids to any types {@link ItemType.Provider#INSTANCE} has gained
+     * since the current registry was taken.
+     * 
+     * @return The new current registry
+     */
+    public static synchronized ItemTypeRegistry refresh() {
+        ItemTypeRegistry registry = current().extendedWith(
+                ItemType.Provider.INSTANCE.getProvidedItemTypes());
+        current = registry;
+        return registry;
+    }
+
+    public static ItemTypeRegistry of(ItemType.Provider provider) {
+        ItemType none = provider.getNoneType();
+        return new ItemTypeRegistry(new ItemType[] { none },
+                ImmutableMap.of(none, NONE_ID))
+                        .extendedWith(provider.getProvidedItemTypes());
+    }
+
+    private final ItemType[] types;
+    private final ImmutableMap<ItemType, Integer> ids;
+
+    private ItemTypeRegistry(ItemType[] types,
+            ImmutableMap<ItemType, Integer> ids) {
+        this.types = types;
+        this.ids = ids;
+    }
+
+    /**
+     * @return A registry with the same ids as this one, plus ids for any of
+     *         {@code types} not yet registered
+     */
+    public ItemTypeRegistry extendedWith(Iterable<ItemType> types) {
+        Map<ItemType, Integer> added = new LinkedHashMap<>();
+        int next = this.types.length;
+        for (ItemType type : types) {
+            checkNotNull(type, "item type cannot be null");
+            if (!this.ids.containsKey(type) && !added.containsKey(type)) {
+                added.put(type, next++);
+            }
+        }
+        if (added.isEmpty()) {
+            return this;
+        }
+        ItemType[] newTypes = Arrays.copyOf(this.types, next);
+        added.forEach((type, id) -> newTypes[id] = type);
+        return new ItemTypeRegistry(newTypes,
+                ImmutableMap.<ItemType, Integer> builder().putAll(this.ids)
+                        .putAll(added).build());
+    }
+
+    public int size() {
+        return this.types.length;
+    }
+
+    public ItemType getType(int id) {
+        checkElementIndex(id, this.types.length, "id");
+        return this.types[id];
+    }
+
+    /**
+     * @return The id of {@code type}, or {@link #UNKNOWN_ID}
+     */
+    public int getId(ItemType type) {
+        return this.ids.getOrDefault(type, UNKNOWN_ID);
+    }
+
+    public boolean contains(ItemType type) {
+        return this.ids.containsKey(type);
+    }
+
+    @Override
+    public String toString() {
+        return "ItemTypeRegistry[size=" + this.types.length + "]";
+    }
+
+}
@@ -24,6 +24,8 @@
  */
 package me.kenzierocks.autoergel.recipe;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -44,11 +46,99 @@ public interface Recipe {
      * 
      * @return The result item, if present.
      */
-    Optional<CraftingData> onResultTaken(CraftingData data,
+    default Optional<CraftingData> onResultTaken(CraftingData data,
             ItemStackSnapshot takenResult,
-            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem);
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        // First, double check that the recipe matches
+        return tryToApplyRecipe(data).map(res -> {
+            // Next, double check the amounts
+            int possible = res.getQuantity();
+            int taken = takenResult.getQuantity();
+            if (possible < taken) {
+                // Too many taken - take none
+                return null;
+            }
+            // Next, apply the recipe as many times as possible
+            int done = maxApplications(data);
+            if (done != taken) {
+                // bahasdasd?
+                return null;
+            }
+            return applyN(data, done, getContainerItem);
+        });
+    }
+
+    /**
+     * Removes the items for one application of this recipe. Implementations
+     * must override either this or
+     * {@link #applyN(CraftingData, int, Function)}, as each defaults to the
+     * other.
+     */
+    default CraftingData removeItemsForOneApply(CraftingData data,
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        return applyN(data, 1, getContainerItem);
+    }
 
-    CraftingData removeItemsForOneApply(CraftingData data,
-            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem);
+    /**
+     * Computes how many times in a row this recipe can be applied to the
+     * given items + layout.
+     * 
+     * <p>
+     * The default applies the recipe one step at a time until it no longer
+     * matches, or removing the items for another step fails with an
+     * {@link IllegalArgumentException}. Recipes that know their required
+     * quantities should compute this in closed form instead.
+     * </p>
+     * 
+     * @return The number of applications, {@code 0} if the recipe does not
+     *         match.
+     */
+    default int maxApplications(CraftingData data) {
+        int times = 0;
+        CraftingData left = data;
+        while (tryToApplyRecipe(left).isPresent()) {
+            CraftingData next;
+            try {
+                next = removeItemsForOneApply(left,
+                        stack -> ItemStackSnapshot.getNoneStack());
+            } catch (IllegalArgumentException notEnough) {
+                break;
+            }
+            if (next.equals(left)) {
+                // a recipe of nothing can't be applied
+                return 0;
+            }
+            left = next;
+            times++;
+        }
+        return times;
+    }
+
+    /**
+     * Removes the items for {@code times} applications of this recipe at once.
+     * A cell that is used up is replaced by its container item, if
+     * {@code getContainerItem} returns one.
+     * 
+     * <p>
+     * The default calls {@link #removeItemsForOneApply(CraftingData, Function)}
+     * {@code times} times.
+     * </p>
+     * 
+     * @throws IllegalArgumentException
+     *             If the recipe cannot be applied {@code times} times.
+     */
+    default CraftingData applyN(CraftingData data, int times,
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        checkArgument(times >= 0, "times cannot be negative");
+        CraftingData left = data;
+        for (int i = 0; i < times; i++) {
+            if (!tryToApplyRecipe(left).isPresent()) {
+                throw new IllegalArgumentException("Cannot apply " + times
+                        + " time" + (times == 1 ? "" : "s"));
+            }
+            left = removeItemsForOneApply(left, getContainerItem);
+        }
+        return left;
+    }
 
 }
\ No newline at end of file
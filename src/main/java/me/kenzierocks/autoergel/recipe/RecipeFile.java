@@ -0,0 +1,364 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.translator.BinaryDataTranslator;
+import me.kenzierocks.autoergel.osadata.util.persistence.InvalidDataException;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * Reads and writes {@link DefaultShapedRecipe}s and
+ * {@link DefaultShapelessRecipe}s in a compact binary format, so that large
+ * recipe sets can be loaded without going through the builders.
+ * 
+ * <p>
+ * A file starts with a magic number and format version, followed by a table
+ * of the {@link ItemType#getId() ids} of every item type used, with
+ * {@link ItemType#NONE} first. Stacks refer to item types by their index in
+ * that table; custom data is stored after the stack as a length-prefixed
+ * {@link BinaryDataTranslator} blob. Recipes follow in their original
+ * order, so registering them in file order keeps the priority between
+ * overlapping recipes.
+ * </p>
+ * 
+ * <p>
+ * Reading checks the header and resolves the whole item table against
+ * {@link ItemType.Provider#INSTANCE} before any recipe is built; a file that
+ * is truncated, from another version, or uses unknown item types fails with
+ * an {@link InvalidDataException}.
+ * </p>
+ */
+public final class RecipeFile {
+
+    private static final int MAGIC = 0x41455246; // AERF
+    public static final int VERSION = 2;
+
+    private static final BinaryDataTranslator DATA = new BinaryDataTranslator();
+
+    private static final byte SHAPED = 0;
+    private static final byte SHAPELESS = 1;
+
+    // smallest encodings, a length prefix and item, quantity, damage and
+    // blob length
+    private static final int MIN_STRING_SIZE = 4;
+    private static final int MIN_STACK_SIZE = 16;
+
+    public static void write(Collection<? extends Recipe> recipes, Path path)
+            throws IOException {
+        try (OutputStream out =
+                new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(recipes, out);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If one of the recipes is neither a
+     *             {@link DefaultShapedRecipe} nor a
+     *             {@link DefaultShapelessRecipe}
+     * @throws UnsupportedOperationException
+     *             If one of the item types does not implement
+     *             {@link ItemType#getId()}
+     */
+    public static void write(Collection<? extends Recipe> recipes,
+            OutputStream stream) throws IOException {
+        checkNotNull(recipes, "recipes cannot be null");
+        Map<ItemType, Integer> items = new LinkedHashMap<>();
+        items.put(ItemType.NONE, 0);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(recipes.size());
+        for (Recipe recipe : recipes) {
+            if (recipe instanceof DefaultShapedRecipe) {
+                DefaultShapedRecipe shaped = (DefaultShapedRecipe) recipe;
+                out.writeByte(SHAPED);
+                out.writeBoolean(shaped.isMirrored());
+                out.writeInt(shaped.getRows());
+                out.writeInt(shaped.getCols());
+                for (int r = 0; r < shaped.getRows(); r++) {
+                    for (int c = 0; c < shaped.getCols(); c++) {
+                        writeStack(out, items, shaped.getStackAt(r, c));
+                    }
+                }
+                writeStack(out, items, shaped.getOutput());
+            } else if (recipe instanceof DefaultShapelessRecipe) {
+                DefaultShapelessRecipe shapeless =
+                        (DefaultShapelessRecipe) recipe;
+                out.writeByte(SHAPELESS);
+                out.writeInt(shapeless.getIngredients().size());
+                for (ItemStackSnapshot ingredient : shapeless
+                        .getIngredients()) {
+                    writeStack(out, items, ingredient);
+                }
+                writeStack(out, items, shapeless.getOutput());
+            } else {
+                throw new IllegalArgumentException(
+                        "cannot store " + recipe.getClass().getName());
+            }
+        }
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(items.size());
+        for (ItemType type : items.keySet()) {
+            byte[] id = type.getId().getBytes(StandardCharsets.UTF_8);
+            header.writeInt(id.length);
+            header.write(id);
+        }
+        header.flush();
+        body.writeTo(stream);
+        stream.flush();
+    }
+
+    private static void writeStack(DataOutputStream out,
+            Map<ItemType, Integer> items, ItemStackSnapshot stack)
+            throws IOException {
+        Integer item = items.get(stack.getItem());
+        if (item == null) {
+            item = items.size();
+            items.put(stack.getItem(), item);
+        }
+        out.writeInt(item);
+        out.writeInt(stack.getQuantity());
+        out.writeInt(stack.getDamage());
+        if (!stack.hasCustomData()) {
+            out.writeInt(0);
+            return;
+        }
+        ByteBuffer blob = DATA.translateData(stack.toContainer());
+        out.writeInt(blob.remaining());
+        out.write(blob.array(), blob.arrayOffset() + blob.position(),
+                blob.remaining());
+    }
+
+    /**
+     * Reads the recipes of the file at {@code path}, which is mapped into
+     * memory rather than read through a stream.
+     * 
+     * @return The recipes, in their original order
+     */
+    public static List<Recipe> read(Path path) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new InvalidDataException(
+                        "recipe file too large: " + size + " bytes");
+            }
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Reads the recipes from the remaining bytes of {@code buffer}. The
+     * buffer's position is not changed.
+     * 
+     * @return The recipes, in their original order
+     */
+    public static List<Recipe> read(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            int magic = in.getInt();
+            if (magic != MAGIC) {
+                throw new InvalidDataException("not a recipe file");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new InvalidDataException(
+                        "unsupported recipe file version " + version
+                                + ", expected " + VERSION);
+            }
+            ItemType[] items = readItems(in);
+            int count = count(in);
+            ImmutableList.Builder<Recipe> recipes = ImmutableList.builder();
+            for (int i = 0; i < count; i++) {
+                recipes.add(readRecipe(in, items));
+            }
+            if (in.hasRemaining()) {
+                throw new InvalidDataException(
+                        in.remaining() + " unexpected trailing bytes");
+            }
+            return recipes.build();
+        } catch (BufferUnderflowException e) {
+            throw new InvalidDataException("truncated recipe file", e);
+        }
+    }
+
+    private static int count(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            throw new InvalidDataException("negative count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the count of elements that each take at least {@code minSize}
+     * bytes, so that a corrupt count fails before anything is allocated for
+     * it.
+     */
+    private static int count(ByteBuffer in, int minSize) {
+        int count = count(in);
+        if (count > in.remaining() / minSize) {
+            throw new InvalidDataException("count " + count
+                    + " exceeds the remaining " + in.remaining() + " bytes");
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = count(in);
+        if (length > in.remaining()) {
+            throw new InvalidDataException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ItemType[] readItems(ByteBuffer in) {
+        ItemType.Provider provider = ItemType.Provider.INSTANCE;
+        ItemType[] items = new ItemType[count(in, MIN_STRING_SIZE)];
+        Set<ItemType> seen = new HashSet<>();
+        for (int i = 0; i < items.length; i++) {
+            String id = readString(in);
+            items[i] = provider.getById(id).orElseThrow(
+                    () -> new InvalidDataException("unknown item type " + id));
+            if (!seen.add(items[i])) {
+                throw new InvalidDataException("duplicate item type " + id);
+            }
+        }
+        if (items.length == 0 || !items[0].equals(provider.getNoneType())) {
+            throw new InvalidDataException(
+                    "item table must start with the none type");
+        }
+        return items;
+    }
+
+    private static Recipe readRecipe(ByteBuffer in, ItemType[] items) {
+        byte kind = in.get();
+        try {
+            switch (kind) {
+                case SHAPED: {
+                    boolean mirrored = in.get() != 0;
+                    int rows = count(in);
+                    int cols = count(in);
+                    if (rows == 0 || cols == 0) {
+                        throw new InvalidDataException("empty layout");
+                    }
+                    if ((long) rows * cols > in.remaining() / MIN_STACK_SIZE) {
+                        throw new InvalidDataException("layout " + rows + "x"
+                                + cols + " exceeds the remaining "
+                                + in.remaining() + " bytes");
+                    }
+                    ItemStackSnapshot[][] layout =
+                            new ItemStackSnapshot[rows][cols];
+                    for (ItemStackSnapshot[] row : layout) {
+                        for (int c = 0; c < cols; c++) {
+                            row[c] = readStack(in, items);
+                        }
+                    }
+                    return new DefaultShapedRecipe(layout,
+                            readStack(in, items), mirrored);
+                }
+                case SHAPELESS: {
+                    int count = count(in, MIN_STACK_SIZE);
+                    List<ItemStackSnapshot> ingredients =
+                            new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        ingredients.add(readStack(in, items));
+                    }
+                    return new DefaultShapelessRecipe(ingredients,
+                            readStack(in, items));
+                }
+                default:
+                    throw new InvalidDataException(
+                            "unknown recipe kind " + kind);
+            }
+        } catch (IllegalArgumentException e) {
+            // rejected by the recipe itself
+            throw new InvalidDataException("invalid recipe", e);
+        }
+    }
+
+    private static ItemStackSnapshot readStack(ByteBuffer in,
+            ItemType[] items) {
+        int item = in.getInt();
+        if (item < 0 || item >= items.length) {
+            throw new InvalidDataException("bad item index " + item);
+        }
+        int quantity = in.getInt();
+        int damage = in.getInt();
+        int blobLength = count(in);
+        if (blobLength == 0) {
+            return ItemStackSnapshot.interned(items[item], quantity, damage);
+        }
+        int end = in.position() + blobLength;
+        ByteBuffer blob = in.duplicate();
+        blob.limit(end);
+        DataContainer data = DATA.translateFrom(blob);
+        if (blob.hasRemaining()) {
+            throw new InvalidDataException("bad data blob length");
+        }
+        in.position(end);
+        return ItemStack.Factory.INSTANCE.createSnapshot(items[item],
+                quantity, damage, data);
+    }
+
+    private RecipeFile() {
+    }
+
+}
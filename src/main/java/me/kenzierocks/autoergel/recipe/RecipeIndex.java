@@ -0,0 +1,424 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * An immutable snapshot of the recipes registered with a
+ * {@link RecipeManager}, indexed for lookup. Safe to search from any number of
+ * threads.
+ */
+final class RecipeIndex {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /**
+     * A registered recipe and the keys it is indexed under, which are computed
+     * once at registration.
+     */
+    static final class Entry {
+
+        final Recipe recipe;
+        final long order;
+        /**
+         * {@code null} if the recipe is not shaped.
+         */
+        final GridSignature shapedKey;
+        /**
+         * {@code null} if the recipe is not shapeless.
+         */
+        final Long shapelessKey;
+        /**
+         * The item types the recipe uses, {@code null} if it is neither shaped
+         * nor shapeless.
+         */
+        final ImmutableSet<ItemType> itemTypes;
+
+        Entry(Recipe recipe, long order) {
+            this.recipe = recipe;
+            this.order = order;
+            if (recipe instanceof ShapedRecipe) {
+                ShapedRecipe shaped = (ShapedRecipe) recipe;
+                this.shapedKey = GridSignature.of(shaped);
+                this.shapelessKey = null;
+                ImmutableSet.Builder<ItemType> types = ImmutableSet.builder();
+                for (int r = 0; r < shaped.getRows(); r++) {
+                    for (int c = 0; c < shaped.getCols(); c++) {
+                        ItemStackSnapshot stack = shaped.getStackAt(r, c);
+                        if (!GridSignature.isEmpty(stack)) {
+                            types.add(stack.getItem());
+                        }
+                    }
+                }
+                this.itemTypes = types.build();
+            } else if (recipe instanceof ShapelessRecipe) {
+                List<ItemStackSnapshot> ingredients =
+                        ((ShapelessRecipe) recipe).getIngredients();
+                this.shapedKey = null;
+                this.shapelessKey = GridSignature.ingredientsKey(ingredients);
+                ImmutableSet.Builder<ItemType> types = ImmutableSet.builder();
+                for (ItemStackSnapshot stack : ingredients) {
+                    types.add(stack.getItem());
+                }
+                this.itemTypes = types.build();
+            } else {
+                this.shapedKey = null;
+                this.shapelessKey = null;
+                this.itemTypes = null;
+            }
+        }
+
+    }
+
+    static final class Match {
+
+        final Entry entry;
+        final ItemStackSnapshot result;
+
+        Match(Entry entry, ItemStackSnapshot result) {
+            this.entry = entry;
+            this.result = result;
+        }
+
+    }
+
+    private static <K> ImmutableMap<K, Entry[]>
+            freeze(Map<K, List<Entry>> index) {
+        ImmutableMap.Builder<K, Entry[]> frozen = ImmutableMap.builder();
+        index.forEach(
+                (k, v) -> frozen.put(k, v.toArray(new Entry[v.size()])));
+        return frozen.build();
+    }
+
+    private final RecipeMetrics metrics;
+    private final ImmutableList<Entry> entries;
+    private final ImmutableMap<GridSignature, Entry[]> shapedIndex;
+    private final ImmutableMap<Long, Entry[]> shapelessIndex;
+    private final Entry[] unindexed;
+    /**
+     * For each item type, the positions in {@link #entries} of the recipes
+     * using it, in registration order.
+     */
+    private final ImmutableMap<ItemType, int[]> usedBy;
+    /**
+     * The positions of the recipes without any known item type, which every
+     * grid is a candidate for.
+     */
+    private final int[] untyped;
+
+    /**
+     * @param entries
+     *            - in registration order
+     */
+    RecipeIndex(List<Entry> entries, RecipeMetrics metrics) {
+        this.metrics = metrics;
+        this.entries = ImmutableList.copyOf(entries);
+        Map<GridSignature, List<Entry>> shaped = new HashMap<>();
+        Map<Long, List<Entry>> shapeless = new HashMap<>();
+        List<Entry> unindexed = new ArrayList<>();
+        Map<ItemType, List<Integer>> usedBy = new HashMap<>();
+        List<Integer> untyped = new ArrayList<>();
+        for (int i = 0; i < this.entries.size(); i++) {
+            Entry entry = this.entries.get(i);
+            if (entry.itemTypes == null || entry.itemTypes.isEmpty()) {
+                untyped.add(i);
+            } else {
+                for (ItemType type : entry.itemTypes) {
+                    usedBy.computeIfAbsent(type, k -> new ArrayList<>())
+                            .add(i);
+                }
+            }
+            if (entry.shapedKey != null) {
+                shaped.computeIfAbsent(entry.shapedKey,
+                        k -> new ArrayList<>()).add(entry);
+            } else if (entry.shapelessKey != null) {
+                shapeless.computeIfAbsent(entry.shapelessKey,
+                        k -> new ArrayList<>()).add(entry);
+            } else {
+                unindexed.add(entry);
+            }
+        }
+        this.shapedIndex = freeze(shaped);
+        this.shapelessIndex = freeze(shapeless);
+        this.unindexed = unindexed.toArray(new Entry[unindexed.size()]);
+        ImmutableMap.Builder<ItemType, int[]> frozen = ImmutableMap.builder();
+        usedBy.forEach((k, v) -> frozen.put(k, Ints.toArray(v)));
+        this.usedBy = frozen.build();
+        this.untyped = Ints.toArray(untyped);
+    }
+
+    ImmutableList<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Asks the recipe of {@code entry} for its result, reporting the attempt
+     * to the metrics.
+     * 
+     * @param attempts
+     *            - {@code attempts[slot]} counts the recipes asked, or
+     *            {@code null} if metrics are disabled
+     */
+    Optional<ItemStackSnapshot> tryApply(Entry entry, CraftingData data,
+            int[] attempts, int slot) {
+        if (attempts == null) {
+            return entry.recipe.tryToApplyRecipe(data);
+        }
+        attempts[slot]++;
+        long start = System.nanoTime();
+        Optional<ItemStackSnapshot> result =
+                entry.recipe.tryToApplyRecipe(data);
+        this.metrics.attempt(entry.recipe, result.isPresent(),
+                System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Finds the first registered recipe that applies to {@code data}.
+     * 
+     * @param attempts
+     *            - {@code attempts[0]} counts the recipes asked, or
+     *            {@code null} if metrics are disabled
+     * @return The match, or {@code null}
+     */
+    Match search(CraftingData data, int[] attempts) {
+        Match found = null;
+        if (!this.shapedIndex.isEmpty()) {
+            found = firstMatch(this.shapedIndex.get(GridSignature.of(data)),
+                    data, found, attempts, 0);
+        }
+        return searchUnshaped(data, found, attempts, 0);
+    }
+
+    /**
+     * @return The positions in {@link #getEntries()} of the recipes using
+     *         {@code type}, in registration order
+     */
+    int[] usedBy(ItemType type) {
+        int[] positions = this.usedBy.get(type);
+        return positions == null ? NO_POSITIONS : positions;
+    }
+
+    /**
+     * The recipes that can match a grid holding exactly the item types
+     * {@code types}, in registration order. A shaped or shapeless recipe only
+     * matches a grid that holds every item type it uses and no other; recipes
+     * of other kinds are always candidates.
+     * 
+     * @param covered
+     *            - for each position in {@link #getEntries()}, how many of
+     *            {@code types} that recipe uses
+     */
+    Entry[] candidates(Set<ItemType> types, int[] covered) {
+        int[] rarest = null;
+        for (ItemType type : types) {
+            int[] positions = usedBy(type);
+            if (rarest == null || positions.length < rarest.length) {
+                rarest = positions;
+            }
+        }
+        List<Entry> candidates = new ArrayList<>();
+        int u = 0;
+        if (rarest != null) {
+            for (int p : rarest) {
+                Entry entry = this.entries.get(p);
+                if (covered[p] != types.size()
+                        || entry.itemTypes.size() != types.size()) {
+                    continue;
+                }
+                while (u < this.untyped.length && this.untyped[u] < p) {
+                    candidates.add(this.entries.get(this.untyped[u++]));
+                }
+                candidates.add(entry);
+            }
+        }
+        while (u < this.untyped.length) {
+            candidates.add(this.entries.get(this.untyped[u++]));
+        }
+        return candidates.toArray(new Entry[candidates.size()]);
+    }
+
+    /**
+     * Finds the first of {@code candidates}, as returned by
+     * {@link #candidates(Set, int[])}, that applies to {@code data}.
+     * 
+     * @param attempts
+     *            - {@code attempts[0]} counts the recipes asked, or
+     *            {@code null} if metrics are disabled
+     * @return The match, or {@code null}
+     */
+    Match search(Entry[] candidates, CraftingData data, int[] attempts) {
+        return firstMatch(candidates, data, null, attempts, 0);
+    }
+
+    /**
+     * Searches a group of grids that all have the given signature. Every
+     * shaped candidate is tried against all grids of the group before moving
+     * on to the next candidate.
+     * 
+     * @param members
+     *            - the indexes into {@code data} of the group
+     * @param out
+     *            - receives the match, or {@code null}, for every member
+     * @param attempts
+     *            - counts the recipes asked for every member, or {@code null}
+     *            if metrics are disabled
+     */
+    void search(GridSignature signature, CraftingData[] data, int[] members,
+            Match[] out, int[] attempts) {
+        Entry[] shaped = this.shapedIndex.get(signature);
+        if (shaped != null) {
+            int unresolved = members.length;
+            for (int e = 0; e < shaped.length && unresolved > 0; e++) {
+                Entry entry = shaped[e];
+                for (int m : members) {
+                    if (out[m] != null) {
+                        continue;
+                    }
+                    Optional<ItemStackSnapshot> result =
+                            tryApply(entry, data[m], attempts, m);
+                    if (result.isPresent()) {
+                        out[m] = new Match(entry, result.get());
+                        unresolved--;
+                    }
+                }
+            }
+        }
+        for (int m : members) {
+            out[m] = searchUnshaped(data[m], out[m], attempts, m);
+        }
+    }
+
+    /**
+     * Finds the first registered recipe that applies to the slots of
+     * {@code inventory}. {@link DefaultShapedRecipe}s are matched against the
+     * slots directly; the slots are only snapshotted if another kind of
+     * recipe has to be asked, or to produce the result of a match.
+     * 
+     * @param attempts
+     *            - {@code attempts[0]} counts the recipes asked, or
+     *            {@code null} if metrics are disabled
+     * @return The match, or {@code null}
+     */
+    Match search(GridBasedInventory inventory, int[] attempts) {
+        CraftingData data = null;
+        Match found = null;
+        Entry[] shaped = this.shapedIndex.isEmpty() ? null
+                : this.shapedIndex.get(GridSignature.of(inventory));
+        if (shaped != null) {
+            for (Entry entry : shaped) {
+                if (entry.recipe instanceof DefaultShapedRecipe
+                        && !matches((DefaultShapedRecipe) entry.recipe,
+                                inventory, attempts)) {
+                    continue;
+                }
+                if (data == null) {
+                    data = CraftingData.of(inventory);
+                }
+                Optional<ItemStackSnapshot> result =
+                        tryApply(entry, data, attempts, 0);
+                if (result.isPresent()) {
+                    found = new Match(entry, result.get());
+                    break;
+                }
+            }
+        }
+        boolean unshapedCandidates = this.unindexed.length > 0
+                || (!this.shapelessIndex.isEmpty() && this.shapelessIndex
+                        .containsKey(GridSignature.ingredientsKey(inventory)));
+        if (!unshapedCandidates) {
+            return found;
+        }
+        return searchUnshaped(data == null ? CraftingData.of(inventory) : data,
+                found, attempts, 0);
+    }
+
+    /**
+     * Reports misses of the direct inventory check as attempts; hits are
+     * reported when the recipe is asked for its result.
+     */
+    private boolean matches(DefaultShapedRecipe recipe,
+            GridBasedInventory inventory, int[] attempts) {
+        if (attempts == null) {
+            return recipe.matches(inventory);
+        }
+        long start = System.nanoTime();
+        boolean matches = recipe.matches(inventory);
+        if (!matches) {
+            attempts[0]++;
+            this.metrics.attempt(recipe, false, System.nanoTime() - start);
+        }
+        return matches;
+    }
+
+    private Match searchUnshaped(CraftingData data, Match found,
+            int[] attempts, int slot) {
+        if (!this.shapelessIndex.isEmpty()) {
+            found = firstMatch(
+                    this.shapelessIndex.get(
+                            GridSignature.ingredientsKey(data.getAsList())),
+                    data, found, attempts, slot);
+        }
+        return firstMatch(this.unindexed, data, found, attempts, slot);
+    }
+
+    /**
+     * @return The first match in {@code entries} registered before
+     *         {@code found}, or {@code found} if there is none
+     */
+    private Match firstMatch(Entry[] entries, CraftingData data, Match found,
+            int[] attempts, int slot) {
+        if (entries == null) {
+            return found;
+        }
+        long before = found == null ? Long.MAX_VALUE : found.entry.order;
+        for (Entry entry : entries) {
+            if (entry.order >= before) {
+                break;
+            }
+            Optional<ItemStackSnapshot> result =
+                    tryApply(entry, data, attempts, slot);
+            if (result.isPresent()) {
+                return new Match(entry, result.get());
+            }
+        }
+        return found;
+    }
+
+}
@@ -24,361 +24,401 @@
  */
 package me.kenzierocks.autoergel.recipe;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.RecipeIndex.Entry;
+import me.kenzierocks.autoergel.recipe.RecipeIndex.Match;
+
 /**
- * Delicious.
+ * Holds registered recipes and finds the one that applies to a crafting grid.
+ * 
+ * <p>
+ * {@link ShapedRecipe Shaped recipes} are indexed by the
+ * {@link GridSignature signature} of their occupied cells, so a lookup only
+ * runs {@link Recipe#tryToApplyRecipe(CraftingData)} on the handful of recipes
+ * whose trimmed size, occupied cells and items agree with the grid. A shaped
+ * recipe is therefore never matched by a grid holding items outside of the
+ * recipe's shape. The index doesn't care where the shape is in the grid, or
+ * whether it is mirrored, so grids only need to be trimmed for recipes that
+ * expect it. {@link ShapelessRecipe Shapeless recipes} are indexed by the
+ * multiset of their ingredients' items, and only looked up if a grid holds
+ * exactly those items. Other recipes are checked one by one. If several recipes
+ * match, the one registered first wins.
+ * </p>
+ * 
+ * <p>
+ * Lookups are remembered in a bounded cache keyed by the grid itself, so a
+ * grid equal to one seen before, quantities included, skips the index
+ * entirely; a remembered recipe is still asked for the result. This assumes
+ * that recipes match the same grids every time they are asked. The cache is
+ * cleared whenever a recipe is added or removed.
+ * </p>
+ * 
+ * <p>
+ * A manager can be shared between threads. Lookups never lock: they read an
+ * immutable {@link RecipeIndex snapshot} of the registered recipes from a
+ * volatile field. Adding or removing recipes builds the new snapshot on the
+ * registering thread and then swaps it in, so lookups never wait for a
+ * rebuild and never see a half-built index. Use
+ * {@link #addRecipes(Iterable)} to register many recipes with one rebuild.
+ * </p>
+ * 
+ * <p>
+ * Every lookup and every recipe asked during it can be reported to a
+ * {@link RecipeMetrics} given at construction.
+ * </p>
  */
 public class RecipeManager {
 
-    // BIG TODO: how the hell do I use this
-    //
-    // private final List<Recipe> recipes = new ArrayList<>();
-    //
-    // @Listener
-    // public void onChangeInventory(ChangeInventoryEvent event,
-    // @First Player player) {
-    // if (event.getCause().first(Player.class).isPresent()) {
-    // // disable stuff
-    // Inventory parent = event.getTargetInventory();
-    // resendInv((Container) parent, player);
-    // if (parent instanceof ContainerWorkbench) {
-    // resendInv((Container) parent, player);
-    // }
-    // if (parent instanceof ContainerPlayer) {
-    // resendInv((Container) parent, player);
-    // }
-    // return;
-    // }
-    // Inventory parent = event.getTargetInventory();
-    // if (parent instanceof ContainerWorkbench) {
-    // doEverythingJustDoIt(event.getTransactions(),
-    // (ContainerWorkbench) parent, player);
-    // }
-    // if (parent instanceof ContainerPlayer) {
-    // doEverythingJustDoIt(event.getTransactions(),
-    // (ContainerPlayer) parent, player);
-    // }
-    // }
-    //
-    // private void resendInv(Container container, Player player) {
-    // // This sets all the slots properly :3
-    // ((EntityPlayerMP) player).sendContainerToPlayer(container);
-    // // for (Object o : container.inventorySlots) {
-    // // System.err.println("Sending slot " + ((Slot) o).slotNumber + " = "
-    // // + ((Slot) o).getStack());
-    // // ((EntityPlayerMP) player).playerNetServerHandler
-    // // .sendPacket(new S2FPacketSetSlot(container.windowId,
-    // // ((Slot) o).slotNumber, ((Slot) o).getStack()));
-    // // }
-    // }
-    //
-    // private void doEverythingJustDoIt(List<SlotTransaction> transactions,
-    // Container table, Player player) {
-    // // craft-in-progress
-    // // if (transactions.stream().anyMatch(
-    // // t -> ((Slot) t.getSlot()).inventory == getCraftMatrix(table))) {
-    // // checkRecipeASE(getCraftMatrix(table), getCraftResult(table));
-    // // afterCheckRecipe(table.windowId, getCraftResult(table), player);
-    // // }
-    // // take crafted stuff
-    // if (transactions.stream().anyMatch(
-    // t -> ((Slot) t.getSlot()).inventory == getCraftResult(table))) {
-    // List<SlotTransaction> filtered = transactions.stream()
-    // .filter(t -> ((Slot) t
-    // .getSlot()).inventory == getCraftResult(table))
-    // .collect(Collectors.toList());
-    // checkState(filtered.size() == 1, "shrug.jpg");
-    // SlotTransaction slotT = filtered.get(0);
-    // CraftingData data =
-    // new CraftingData(toLayoutASE(getCraftMatrix(table)),
-    // toListASE(getCraftMatrix(table)));
-    // produceResult(data).ifPresent(x -> {
-    // if (slotT.getFinal().getType().equals(ItemTypes.NONE)
-    // && ItemStackComparators.ALL.compare(
-    // slotT.getOriginal().createStack(), x) == 0) {
-    // // extract of recipe!
-    // clearTheTable(table, player, slotT.getFinal().createStack(),
-    // data);
-    // }
-    // });
-    // }
-    // }
-    //
-    // private InventoryCrafting getCraftMatrix(Container c) {
-    // if (c instanceof ContainerWorkbench) {
-    // ContainerWorkbench bench = (ContainerWorkbench) c;
-    // return bench.craftMatrix;
-    // } else if (c instanceof ContainerPlayer) {
-    // ContainerPlayer player = (ContainerPlayer) c;
-    // return player.craftMatrix;
-    // } else if (c == null) {
-    // throw new NullPointerException("c");
-    // }
-    // throw new IllegalArgumentException(
-    // "no support for " + c.getClass().getName());
-    // }
-    //
-    // private IInventory getCraftResult(Container c) {
-    // if (c instanceof ContainerWorkbench) {
-    // ContainerWorkbench bench = (ContainerWorkbench) c;
-    // return bench.craftResult;
-    // } else if (c instanceof ContainerPlayer) {
-    // ContainerPlayer player = (ContainerPlayer) c;
-    // return player.craftResult;
-    // } else if (c == null) {
-    // throw new NullPointerException("c");
-    // }
-    // throw new IllegalArgumentException(
-    // "no support for " + c.getClass().getName());
-    // }
-    //
-    // public void addRecipe(Recipe recipe) {
-    // if (recipe instanceof DefaultShapedRecipe) {
-    // DefaultShapedRecipe dsr = (DefaultShapedRecipe) recipe;
-    // GameRegistry.addRecipe(new IRecipe() {
-    //
-    // @Override
-    // public boolean matches(InventoryCrafting inv, World worldIn) {
-    // return dsr.tryToApplyRecipe(
-    // new CraftingData(toLayoutASE(inv), toListASE(inv)))
-    // .isPresent();
-    // }
-    //
-    // @Override
-    // public net.minecraft.item.ItemStack[]
-    // getRemainingItems(InventoryCrafting inv) {
-    // net.minecraft.item.ItemStack[] aitemstack =
-    // new net.minecraft.item.ItemStack[inv
-    // .getSizeInventory()];
-    //
-    // for (int i = 0; i < aitemstack.length; ++i) {
-    // net.minecraft.item.ItemStack itemstack =
-    // inv.getStackInSlot(i);
-    // aitemstack[i] = ForgeHooks.getContainerItem(itemstack);
-    // }
-    //
-    // return aitemstack;
-    // }
-    //
-    // @Override
-    // public int getRecipeSize() {
-    // return dsr.getCols() * dsr.getRows();
-    // }
-    //
-    // @Override
-    // public net.minecraft.item.ItemStack getRecipeOutput() {
-    // return (net.minecraft.item.ItemStack) dsr.getOutput()
-    // .createStack();
-    // }
-    //
-    // @SuppressWarnings("unchecked")
-    // @Override
-    // public net.minecraft.item.ItemStack
-    // getCraftingResult(InventoryCrafting inv) {
-    // // haha i shouldn't do this :3
-    // TBMPlugin.getInstance().getExecutor().schedule(() -> {
-    // try {
-    // Field eventHandler = InventoryCrafting.class
-    // .getDeclaredFields()[3];
-    // eventHandler.setAccessible(true);
-    // Container container =
-    // (Container) eventHandler.get(inv);
-    // Field[] f = Container.class.getDeclaredFields();
-    // List<ICrafting> crafterList = null;
-    // for (int i = 1; i < f.length; i++) {
-    // f[i].setAccessible(true);
-    // if (f[i].getType() == List.class
-    // && f[i - 1].getType() == Set.class) {
-    // crafterList = (List<ICrafting>) f[i]
-    // .get(container);
-    // }
-    // }
-    // for (ICrafting craft : crafterList) {
-    // if (craft instanceof Player) {
-    // Player p = (Player) craft;
-    // resendInv(container, p);
-    // }
-    // }
-    // } catch (Exception e) {
-    // e.printStackTrace();
-    // }
-    // }, 10, TimeUnit.MILLISECONDS);
-    // return (net.minecraft.item.ItemStack) dsr.tryToApplyRecipe(
-    // new CraftingData(toLayoutASE(inv), toListASE(inv)))
-    // .orElse(null);
-    // }
-    // });
-    // }
-    // this.recipes.add(recipe);
-    // }
-    //
-    // private boolean clearTheTable(Container container, Player player,
-    // ItemStack taken, CraftingData data) {
-    // InventoryCrafting craftMatrix = getCraftMatrix(container);
-    // boolean cancel = true;
-    // for (Recipe recipe : this.recipes) {
-    // Optional<ItemStack> result = recipe.tryToApplyRecipe(data);
-    // if (result.isPresent()) {
-    // Optional<CraftingData> endResult = recipe.onResultTaken(data,
-    // taken, x -> (ItemStack) ForgeHooks.getContainerItem(
-    // (net.minecraft.item.ItemStack) x));
-    // if (endResult.isPresent()) {
-    // cancel = false;
-    // ItemStack[][] layout = endResult.get().getAsLayout(false);
-    // for (int c = 0; c < layout.length; c++) {
-    // for (int r = 0; r < layout[0].length; r++) {
-    // craftMatrix.setInventorySlotContents(
-    // r + c * craftMatrix.getWidth(),
-    // (net.minecraft.item.ItemStack) layout[r][c]);
-    // }
-    // }
-    // break;
-    // }
-    // }
-    // }
-    // // This sets all the slots properly :3
-    // for (Object o : container.inventorySlots) {
-    // ((EntityPlayerMP) player).playerNetServerHandler
-    // .sendPacket(new S2FPacketSetSlot(container.windowId,
-    // ((Slot) o).slotNumber, ((Slot) o).getStack()));
-    // }
-    // return cancel;
-    // }
-    //
-    // private void afterCheckRecipe(int windowId, IInventory craftResult,
-    // Player player) {
-    // ((EntityPlayerMP) player).playerNetServerHandler
-    // .sendPacket(new S2FPacketSetSlot(windowId, 0,
-    // craftResult.getStackInSlot(0)));
-    // }
-    //
-    // private void checkRecipeASE(InventoryCrafting table,
-    // IInventory craftResult) {
-    // ItemStack[][] asLayout = toLayoutASE(table);
-    // List<ItemStack> asList = toListASE(table);
-    // produceResult(new CraftingData(asLayout, asList))
-    // .ifPresent(x -> craftResult.setInventorySlotContents(0,
-    // (net.minecraft.item.ItemStack) x));
-    // }
-    //
-    // private ItemStack[][] toLayoutASE(InventoryCrafting table) {
-    // ItemStack[][] stacks =
-    // new ItemStack[table.getHeight()][table.getWidth()];
-    // int[] rowCounts = new int[table.getHeight()];
-    // int[] colCounts = new int[table.getWidth()];
-    // for (int r = 0; r < table.getHeight(); r++) {
-    // for (int c = 0; c < table.getWidth(); c++) {
-    // ItemStack stack =
-    // (ItemStack) table.getStackInRowAndColumn(r, c);
-    // if (stack != null && !stack.getItem().equals(ItemTypes.NONE)) {
-    // stacks[c][r] = stack;
-    // rowCounts[r]++;
-    // colCounts[c]++;
-    // }
-    // }
-    // }
-    // // re-adjust stacks to fill top/left
-    // int firstNonEmptyRow = -1;
-    // for (int r = 0; r < rowCounts.length; r++) {
-    // if (rowCounts[r] != 0) {
-    // firstNonEmptyRow = r;
-    // break;
-    // }
-    // }
-    // int firstNonEmptyCol = -1;
-    // for (int c = 0; c < colCounts.length; c++) {
-    // if (colCounts[c] != 0) {
-    // firstNonEmptyCol = c;
-    // break;
-    // }
-    // }
-    // if (firstNonEmptyRow == -1) {
-    // stacks = new ItemStack[0][0];
-    // } else if (firstNonEmptyRow != 0) {
-    // stacks = Arrays.copyOfRange(stacks, firstNonEmptyRow,
-    // stacks.length);
-    // }
-    // if (firstNonEmptyCol == -1) {
-    // stacks = new ItemStack[0][0];
-    // } else if (firstNonEmptyCol != 0) {
-    // int nonEmptyCol = firstNonEmptyCol;
-    // stacks = Stream
-    // .of(stacks).map(oldRow -> Arrays.copyOfRange(oldRow,
-    // nonEmptyCol, oldRow.length))
-    // .toArray(ItemStack[][]::new);
-    // }
-    // return stacks;
-    // }
-    //
-    // private List<ItemStack> toListASE(IInventory table) {
-    // return IntStream.range(0, table.getSizeInventory())
-    // .mapToObj(table::getStackInSlot).filter(Objects::nonNull)
-    // .map(ItemStack.class::cast).collect(Collectors.toList());
-    // }
-    //
-    // private void checkRecipe(CraftingInventory table) {
-    // ItemStack[][] asLayout = toLayout(table);
-    // List<ItemStack> asList = toList(table);
-    // produceResult(new CraftingData(asLayout, asList))
-    // .ifPresent(table.getResult()::set);
-    // }
-    //
-    // private Optional<ItemStack> produceResult(CraftingData data) {
-    // return this.recipes.stream().map(x -> x.tryToApplyRecipe(data))
-    // .filter(Optional::isPresent).findFirst()
-    // .orElseGet(Optional::empty);
-    // }
-    //
-    // private ItemStack[][] toLayout(CraftingInventory table) {
-    // GridInventory grid = table.getCraftingGrid();
-    // ItemStack[][] stacks = new ItemStack[grid.getRows()][grid.getColumns()];
-    // int[] rowCounts = new int[grid.getRows()];
-    // int[] colCounts = new int[grid.getColumns()];
-    // for (int r = 0; r < grid.getRows(); r++) {
-    // for (int c = 0; c < grid.getColumns(); c++) {
-    // ItemStack stack = grid.getSlot(r, c).get().peek()
-    // .orElse(Shortcuts.singleStackOfItem(ItemTypes.NONE));
-    // if (!stack.getItem().equals(ItemTypes.NONE)) {
-    // stacks[r][c] = stack;
-    // rowCounts[r]++;
-    // colCounts[c]++;
-    // }
-    // }
-    // }
-    // // re-adjust stacks to fill top/left
-    // int firstNonEmptyRow = -1;
-    // for (int r = 0; r < rowCounts.length; r++) {
-    // if (rowCounts[r] != 0) {
-    // firstNonEmptyRow = r;
-    // break;
-    // }
-    // }
-    // int firstNonEmptyCol = -1;
-    // for (int c = 0; c < colCounts.length; c++) {
-    // if (colCounts[c] != 0) {
-    // firstNonEmptyCol = c;
-    // break;
-    // }
-    // }
-    // if (firstNonEmptyRow != 0) {
-    // stacks = Arrays.copyOfRange(stacks, firstNonEmptyRow,
-    // stacks.length);
-    // }
-    // if (firstNonEmptyCol != 0) {
-    // int nonEmptyCol = firstNonEmptyCol;
-    // stacks = Stream
-    // .of(stacks).map(oldRow -> Arrays.copyOfRange(oldRow,
-    // nonEmptyCol, oldRow.length))
-    // .toArray(ItemStack[][]::new);
-    // }
-    // return stacks;
-    // }
-    //
-    // private List<ItemStack> toList(CraftingInventory table) {
-    // return FluentIterable.from(table.getCraftingGrid())
-    // .transform(Inventory::peek).filter(Optional::isPresent)
-    // .transform(Optional::get)
-    // .filter(stack -> !stack.getItem().equals(ItemTypes.NONE))
-    // .toList();
-    // }
+    /**
+     * A cached lookup, only valid for the index it was found in.
+     */
+    private static final class CachedMatch {
+
+        private final RecipeIndex index;
+        private final Entry entry;
+
+        CachedMatch(RecipeIndex index, Entry entry) {
+            this.index = index;
+            this.entry = entry;
+        }
+
+    }
+
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 1024;
+
+    /**
+     * Marks a lookup that the cache couldn't answer.
+     */
+    private static final Match UNKNOWN = new Match(null, null);
+
+    private final Cache<CraftingData, CachedMatch> resultCache;
+    private final RecipeMetrics metrics;
+    private final Object lock = new Object();
+    // guarded by lock
+    private final List<Entry> registered = new ArrayList<>();
+    // guarded by lock
+    private long nextOrder;
+    /**
+     * Replaced, never modified, when the registered recipes change.
+     */
+    private volatile RecipeIndex index;
+
+    public RecipeManager() {
+        this(DEFAULT_RESULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param resultCacheSize
+     *            - the number of grids to remember the matching recipe for,
+     *            {@code 0} to disable the cache
+     */
+    public RecipeManager(int resultCacheSize) {
+        this(resultCacheSize, RecipeMetrics.NOOP);
+    }
+
+    /**
+     * @param resultCacheSize
+     *            - the number of grids to remember the matching recipe for,
+     *            {@code 0} to disable the cache
+     * @param metrics
+     *            - receives the measurements of every lookup
+     */
+    public RecipeManager(int resultCacheSize, RecipeMetrics metrics) {
+        checkArgument(resultCacheSize >= 0,
+                "result cache size cannot be negative");
+        this.resultCache = CacheBuilder.newBuilder()
+                .maximumSize(resultCacheSize).recordStats().build();
+        this.metrics = checkNotNull(metrics, "metrics cannot be null");
+        this.index = new RecipeIndex(ImmutableList.of(), this.metrics);
+    }
+
+    public void addRecipe(Recipe recipe) {
+        checkNotNull(recipe, "recipe cannot be null");
+        synchronized (this.lock) {
+            this.registered.add(new Entry(recipe, this.nextOrder++));
+            recipesChanged();
+        }
+    }
+
+    /**
+     * Registers all of {@code recipes}, in order. The index is rebuilt once
+     * for the whole batch rather than once per recipe.
+     */
+    public void addRecipes(Iterable<? extends Recipe> recipes) {
+        checkNotNull(recipes, "recipes cannot be null");
+        List<Recipe> batch = ImmutableList.copyOf(recipes);
+        synchronized (this.lock) {
+            for (Recipe recipe : batch) {
+                this.registered.add(new Entry(recipe, this.nextOrder++));
+            }
+            recipesChanged();
+        }
+    }
+
+    /**
+     * @return {@code true} if the recipe was registered
+     */
+    public boolean removeRecipe(Recipe recipe) {
+        checkNotNull(recipe, "recipe cannot be null");
+        synchronized (this.lock) {
+            if (!this.registered.removeIf(e -> e.recipe == recipe)) {
+                return false;
+            }
+            recipesChanged();
+        }
+        this.metrics.recipeRemoved(recipe);
+        return true;
+    }
+
+    // call with lock held
+    private void recipesChanged() {
+        this.index = new RecipeIndex(this.registered, this.metrics);
+        this.resultCache.invalidateAll();
+    }
+
+    private RecipeIndex currentIndex() {
+        return this.index;
+    }
+
+    public RecipeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return Counters for the recipes asked during a lookup of
+     *         {@code grids} grids, or {@code null} if nothing is measured
+     */
+    private int[] newAttempts(int grids) {
+        return this.metrics == RecipeMetrics.NOOP ? null : new int[grids];
+    }
+
+    /**
+     * Hit and miss counts of the result cache.
+     */
+    public CacheStats getResultCacheStats() {
+        return this.resultCache.stats();
+    }
+
+    /**
+     * The current snapshot of the registered recipes, replaced whenever a
+     * recipe is added or removed.
+     */
+    RecipeIndex getIndex() {
+        return currentIndex();
+    }
+
+    /**
+     * Opens a {@link CraftingSession} that tracks the recipe matching
+     * {@code inventory} as its slots change.
+     */
+    public CraftingSession openSession(GridBasedInventory inventory) {
+        checkNotNull(inventory, "inventory cannot be null");
+        return new CraftingSession(this, inventory);
+    }
+
+    /**
+     * @return The registered recipes, in registration order
+     */
+    public List<Recipe> getRecipes() {
+        return ImmutableList.copyOf(currentIndex().getEntries().stream()
+                .map(e -> e.recipe).iterator());
+    }
+
+    /**
+     * Finds the first registered recipe that applies to {@code data}.
+     */
+    public Optional<Recipe> findRecipe(CraftingData data) {
+        return Optional.ofNullable(findMatch(data)).map(m -> m.entry.recipe);
+    }
+
+    /**
+     * Applies the first matching recipe to {@code data}.
+     * 
+     * @return The result item, if any recipe matched.
+     */
+    public Optional<ItemStackSnapshot> produceResult(CraftingData data) {
+        return Optional.ofNullable(findMatch(data)).map(m -> m.result);
+    }
+
+    /**
+     * Finds the first registered recipe that applies to the slots of
+     * {@code inventory}, reading them directly instead of taking a
+     * {@link CraftingData} snapshot first. Lookups through inventories bypass
+     * the result cache.
+     */
+    public Optional<Recipe> findRecipe(GridBasedInventory inventory) {
+        return Optional.ofNullable(findMatch(inventory))
+                .map(m -> m.entry.recipe);
+    }
+
+    /**
+     * Applies the first matching recipe to the slots of {@code inventory}.
+     * 
+     * @return The result item, if any recipe matched.
+     * @see #findRecipe(GridBasedInventory)
+     */
+    public Optional<ItemStackSnapshot> produceResult(
+            GridBasedInventory inventory) {
+        return Optional.ofNullable(findMatch(inventory)).map(m -> m.result);
+    }
+
+    /**
+     * Applies the first matching recipe to each of {@code grids}. Grids with
+     * the same {@link GridSignature signature} are matched as a group, so each
+     * candidate recipe is tried against many grids in a row.
+     * 
+     * @return The result items, in the order of {@code grids}
+     */
+    public List<Optional<ItemStackSnapshot>>
+            produceResults(List<CraftingData> grids) {
+        return produceResults(grids, null);
+    }
+
+    /**
+     * Like {@link #produceResults(List)}, but searches the groups of grids in
+     * parallel on {@code pool}.
+     * 
+     * @param pool
+     *            - the pool to search on, or {@code null} to search on the
+     *            calling thread
+     */
+    public List<Optional<ItemStackSnapshot>> produceResults(
+            List<CraftingData> grids, @Nullable ForkJoinPool pool) {
+        checkNotNull(grids, "grids cannot be null");
+        RecipeIndex index = currentIndex();
+        CraftingData[] data = grids.toArray(new CraftingData[grids.size()]);
+        Match[] matches = new Match[data.length];
+        int[] attempts = newAttempts(data.length);
+        Map<GridSignature, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < data.length; i++) {
+            checkNotNull(data[i], "grid %s is null", i);
+            long start = attempts == null ? 0 : System.nanoTime();
+            Match cached = lookupCached(index, data[i], attempts, i);
+            if (cached == UNKNOWN) {
+                groups.computeIfAbsent(GridSignature.of(data[i]),
+                        k -> new ArrayList<>()).add(i);
+            } else {
+                matches[i] = cached;
+                if (attempts != null) {
+                    this.metrics.lookup(cached != null, true, attempts[i],
+                            System.nanoTime() - start);
+                }
+            }
+        }
+        Consumer<Map.Entry<GridSignature, List<Integer>>> searchGroup = g -> {
+            int[] members = Ints.toArray(g.getValue());
+            long start = attempts == null ? 0 : System.nanoTime();
+            index.search(g.getKey(), data, members, matches, attempts);
+            long each = attempts == null ? 0
+                    : (System.nanoTime() - start) / members.length;
+            for (int m : members) {
+                remember(index, data[m], matches[m]);
+                if (attempts != null) {
+                    this.metrics.lookup(matches[m] != null, false,
+                            attempts[m], each);
+                }
+            }
+        };
+        if (pool == null || groups.size() < 2) {
+            groups.entrySet().forEach(searchGroup);
+        } else {
+            pool.submit(() -> groups.entrySet().parallelStream()
+                    .forEach(searchGroup)).join();
+        }
+        return ImmutableList.copyOf(Stream.of(matches)
+                .map(m -> Optional.ofNullable(m).map(x -> x.result))
+                .iterator());
+    }
+
+    private Match findMatch(CraftingData data) {
+        checkNotNull(data, "data cannot be null");
+        RecipeIndex index = currentIndex();
+        int[] attempts = newAttempts(1);
+        long start = attempts == null ? 0 : System.nanoTime();
+        Match found = lookupCached(index, data, attempts, 0);
+        boolean cached = found != UNKNOWN;
+        if (!cached) {
+            found = index.search(data, attempts);
+            remember(index, data, found);
+        }
+        if (attempts != null) {
+            this.metrics.lookup(found != null, cached, attempts[0],
+                    System.nanoTime() - start);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the first of {@code candidates}, taken from {@code index}, that
+     * applies to {@code data}. Used by {@link CraftingSession}, bypassing the
+     * result cache.
+     */
+    Match findMatch(RecipeIndex index, Entry[] candidates, CraftingData data) {
+        int[] attempts = newAttempts(1);
+        long start = attempts == null ? 0 : System.nanoTime();
+        Match found = index.search(candidates, data, attempts);
+        if (attempts != null) {
+            this.metrics.lookup(found != null, false, attempts[0],
+                    System.nanoTime() - start);
+        }
+        return found;
+    }
+
+    private Match findMatch(GridBasedInventory inventory) {
+        checkNotNull(inventory, "inventory cannot be null");
+        int[] attempts = newAttempts(1);
+        long start = attempts == null ? 0 : System.nanoTime();
+        Match found = currentIndex().search(inventory, attempts);
+        if (attempts != null) {
+            this.metrics.lookup(found != null, false, attempts[0],
+                    System.nanoTime() - start);
+        }
+        return found;
+    }
+
+    /**
+     * @return The cached match, {@code null} if the grid is known to match
+     *         nothing, or {@link #UNKNOWN}
+     */
+    private Match lookupCached(RecipeIndex index, CraftingData data,
+            int[] attempts, int slot) {
+        CachedMatch cached = this.resultCache.getIfPresent(data);
+        if (cached == null || cached.index != index) {
+            return UNKNOWN;
+        }
+        if (cached.entry == null) {
+            return null;
+        }
+        Optional<ItemStackSnapshot> result =
+                index.tryApply(cached.entry, data, attempts, slot);
+        // only empty if the recipe changed its mind, look it up properly
+        return result.isPresent() ? new Match(cached.entry, result.get())
+                : UNKNOWN;
+    }
+
+    private void remember(RecipeIndex index, CraftingData data, Match found) {
+        this.resultCache.put(data,
+                new CachedMatch(index, found == null ? null : found.entry));
+    }
 
 }
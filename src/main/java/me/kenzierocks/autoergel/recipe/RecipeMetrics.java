@@ -0,0 +1,76 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+/**
+ * Receives measurements from a {@link RecipeManager}. Methods are called on
+ * the looking-up thread in the middle of lookups, so implementations must be
+ * thread-safe and cheap; see {@link CountingRecipeMetrics}.
+ * 
+ * <p>
+ * A manager using {@link #NOOP} doesn't read the clock or count anything.
+ * </p>
+ */
+public interface RecipeMetrics {
+
+    RecipeMetrics NOOP = new RecipeMetrics() {
+    };
+
+    /**
+     * Called after {@code recipe} was asked whether it applies to a grid.
+     * 
+     * @param matched
+     *            - {@code true} if it applied
+     * @param nanos
+     *            - how long it took to answer
+     */
+    default void attempt(Recipe recipe, boolean matched, long nanos) {
+    }
+
+    /**
+     * Called after a grid was looked up.
+     * 
+     * @param matched
+     *            - {@code true} if a recipe applied
+     * @param cached
+     *            - {@code true} if the result cache answered
+     * @param candidates
+     *            - the number of recipes that were asked
+     * @param nanos
+     *            - how long the lookup took; for batch lookups, the time
+     *            spent on the grid's group divided by the size of the group
+     */
+    default void lookup(boolean matched, boolean cached, int candidates,
+            long nanos) {
+    }
+
+    /**
+     * Called after {@code recipe} was removed from a manager, so that
+     * anything kept for it can be dropped.
+     */
+    default void recipeRemoved(Recipe recipe) {
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.Function;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+/**
+ * A {@link ShapedRecipe} layout flattened into {@link CompiledStacks}, so that
+ * matching a grid is a single loop without interface dispatch back into the
+ * recipe or reflective class checks.
+ * 
+ * <p>
+ * The layout is trimmed to its occupied cells when compiled. A grid matches if
+ * its occupied cells form the same shape, wherever that shape is in the grid;
+ * the grid does not have to be trimmed. Cells are compared as in
+ * {@link ShapedRecipe#matches(ItemStackSnapshot, int, int)}.
+ * </p>
+ */
+final class ShapeMatcher {
+
+    private static final long NO_MATCH = -1;
+
+    private final int rows;
+    private final int cols;
+    private final CompiledStacks cells;
+    private final int[] required;
+
+    /**
+     * @param mirror
+     *            - {@code true} to compile the horizontal mirror image of the
+     *            recipe's layout
+     */
+    ShapeMatcher(ShapedRecipe recipe, boolean mirror) {
+        int minR = recipe.getRows();
+        int maxR = -1;
+        int minC = recipe.getCols();
+        int maxC = -1;
+        for (int r = 0; r < recipe.getRows(); r++) {
+            for (int c = 0; c < recipe.getCols(); c++) {
+                ItemStackSnapshot cell = recipe.getStackAt(r, c);
+                checkArgument(cell != null, "no stack at row %s, column %s",
+                        r, c);
+                if (!GridSignature.isEmpty(cell)) {
+                    minR = Math.min(minR, r);
+                    maxR = Math.max(maxR, r);
+                    minC = Math.min(minC, c);
+                    maxC = Math.max(maxC, c);
+                }
+            }
+        }
+        this.rows = Math.max(0, maxR - minR + 1);
+        this.cols = Math.max(0, maxC - minC + 1);
+        ItemStackSnapshot[] cells =
+                new ItemStackSnapshot[this.rows * this.cols];
+        this.required = new int[cells.length];
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                int recipeR = r + minR;
+                int recipeC = (mirror ? this.cols - 1 - c : c) + minC;
+                int i = r * this.cols + c;
+                cells[i] = recipe.getStackAt(recipeR, recipeC);
+                this.required[i] = recipe.getRequiredQuantity(recipeR, recipeC);
+            }
+        }
+        this.cells = new CompiledStacks(cells);
+    }
+
+    /**
+     * @return {@code true} if {@code other} matches exactly the same grids
+     */
+    boolean sameShape(ShapeMatcher other) {
+        if (this.rows != other.rows || this.cols != other.cols) {
+            return false;
+        }
+        for (int i = 0; i < this.required.length; i++) {
+            if (this.required[i] != other.required[i] || !this.cells.get(i)
+                    .equalIgnoringSize(other.cells.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the top-left corner of the occupied cells of {@code data}, if
+     * they match this shape. Walks the cell array of {@code data} directly.
+     * 
+     * @return {@code row << 32 | column}, or {@link #NO_MATCH}
+     */
+    private long locate(CraftingData data) {
+        int[] bounds = data.getOccupiedBounds();
+        if (bounds.length == 0) {
+            // empty grid, only matches the empty shape
+            return this.rows == 0 ? 0 : NO_MATCH;
+        }
+        int minR = bounds[0];
+        int minC = bounds[2];
+        if (bounds[1] - minR + 1 != this.rows
+                || bounds[3] - minC + 1 != this.cols) {
+            return NO_MATCH;
+        }
+        ItemStackSnapshot[] grid = data.getCells();
+        int offset = data.getOffset();
+        int rowStride = data.getRowStride();
+        int colStride = data.getColStride();
+        CompiledStacks cells = this.cells;
+        int[] ids = data.getItemIds();
+        int i = 0;
+        for (int r = 0; r < this.rows; r++) {
+            int g = offset + (r + minR) * rowStride + minC * colStride;
+            for (int c = 0; c < this.cols; c++, i++, g += colStride) {
+                if (!cells.matches(i, grid[g], ids[g])) {
+                    return NO_MATCH;
+                }
+            }
+        }
+        return ((long) minR << 32) | minC;
+    }
+
+    /**
+     * Same as {@link #locate(CraftingData)}, reading the slots directly.
+     * Slot {@code (x, y)} is row {@code y}, column {@code x}.
+     */
+    private long locate(GridBasedInventory inventory) {
+        int gridRows = inventory.getHeight();
+        int gridCols = inventory.getWidth();
+        int minR = gridRows;
+        int maxR = -1;
+        int minC = gridCols;
+        int maxC = -1;
+        for (int r = 0; r < gridRows; r++) {
+            for (int c = 0; c < gridCols; c++) {
+                if (!GridSignature.isEmpty(inventory.getSlot(c, r))) {
+                    minR = Math.min(minR, r);
+                    maxR = Math.max(maxR, r);
+                    minC = Math.min(minC, c);
+                    maxC = Math.max(maxC, c);
+                }
+            }
+        }
+        if (maxR < 0) {
+            return this.rows == 0 ? 0 : NO_MATCH;
+        }
+        if (maxR - minR + 1 != this.rows || maxC - minC + 1 != this.cols) {
+            return NO_MATCH;
+        }
+        CompiledStacks cells = this.cells;
+        int i = 0;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++, i++) {
+                if (!cells.matches(i,
+                        inventory.getSlot(c + minC, r + minR))) {
+                    return NO_MATCH;
+                }
+            }
+        }
+        return ((long) minR << 32) | minC;
+    }
+
+    boolean matches(CraftingData data) {
+        return locate(data) != NO_MATCH;
+    }
+
+    boolean matches(GridBasedInventory inventory) {
+        return locate(inventory) != NO_MATCH;
+    }
+
+    /**
+     * The minimum over all used cells of {@code available / required}, or
+     * {@code 0} if the grid doesn't match.
+     */
+    int maxApplications(CraftingData data) {
+        long at = locate(data);
+        if (at == NO_MATCH) {
+            return 0;
+        }
+        int r0 = (int) (at >>> 32);
+        int c0 = (int) at;
+        int max = Integer.MAX_VALUE;
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                int required = this.required[r * this.cols + c];
+                if (required > 0) {
+                    max = Math.min(max,
+                            data.getStackAt(r + r0, c + c0).getQuantity()
+                                    / required);
+                }
+            }
+        }
+        return max == Integer.MAX_VALUE ? 0 : max;
+    }
+
+    /**
+     * Removes the items of {@code times} applications. The caller must have
+     * checked {@link #maxApplications(CraftingData)}.
+     */
+    CraftingData applyN(CraftingData data, int times,
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        long at = locate(data);
+        checkArgument(at != NO_MATCH, "recipe does not match");
+        int r0 = (int) (at >>> 32);
+        int c0 = (int) at;
+        ItemStackSnapshot[][] layout = data.getAsLayout(false);
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                int required = this.required[r * this.cols + c];
+                if (required == 0) {
+                    continue;
+                }
+                ItemStackSnapshot layoutStack = layout[r + r0][c + c0];
+                int left = layoutStack.getQuantity() - times * required;
+                layout[r + r0][c + c0] = left > 0
+                        ? layoutStack.withQuantity(left)
+                        : getContainerItem.apply(layoutStack);
+            }
+        }
+        return data.withLayout(layout);
+    }
+
+}
@@ -24,6 +24,7 @@
  */
 package me.kenzierocks.autoergel.recipe;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.util.Optional;
@@ -67,16 +68,12 @@ public interface ShapedRecipe extends Recipe {
     default Optional<ItemStackSnapshot> tryToApplyRecipe(CraftingData data) {
         checkState(getRows() > 0, "cannot have 0 rows");
         checkState(getCols() > 0, "cannot have 0 columns");
-        if (data.getAsLayout().length < getRows()
-                || data.getAsLayout().length < 1) {
-            return Optional.empty();
-        }
-        if (data.getAsLayout()[0].length < getCols()) {
+        if (data.getRows() < getRows() || data.getCols() < getCols()) {
             return Optional.empty();
         }
         for (int r = 0; r < getRows(); r++) {
             for (int c = 0; c < getCols(); c++) {
-                ItemStackSnapshot user = data.getAsLayout()[r][c];
+                ItemStackSnapshot user = data.getStackAt(r, c);
                 if (!matches(user, r, c)) {
                     return Optional.empty();
                 }
@@ -85,61 +82,60 @@ public interface ShapedRecipe extends Recipe {
         return Optional.of(translateLayoutToOutput(data.getAsLayout()));
     }
 
+    /**
+     * The quantity consumed from the grid at the given row and column for one
+     * application. Cells that are {@link ItemType#NONE} consume nothing, other
+     * cells always consume at least one item.
+     */
+    default int getRequiredQuantity(int r, int c) {
+        ItemStackSnapshot stack = getStackAt(r, c);
+        if (stack.getItem().equals(ItemType.NONE)) {
+            return 0;
+        }
+        return Math.max(1, stack.getQuantity());
+    }
+
     @Override
-    default Optional<CraftingData> onResultTaken(CraftingData data,
-            ItemStackSnapshot takenResult,
-            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
-        // First, double check that the recipe matches
-        return tryToApplyRecipe(data).map(res -> {
-            // Next, double check the amounts
-            int possible = res.getQuantity();
-            int taken = takenResult.getQuantity();
-            if (possible < taken) {
-                // Too many taken - take none
-                return null;
-            }
-            // Next, apply the recipe repeatedly
-            int done = 0;
-            CraftingData next = data;
-            while (true) {
-                try {
-                    next = removeItemsForOneApply(next, getContainerItem);
-                    done++;
-                } catch (IllegalArgumentException cannotApply) {
-                    break;
+    default int maxApplications(CraftingData data) {
+        if (!tryToApplyRecipe(data).isPresent()) {
+            return 0;
+        }
+        int max = Integer.MAX_VALUE;
+        for (int r = 0; r < getRows(); r++) {
+            for (int c = 0; c < getCols(); c++) {
+                int required = getRequiredQuantity(r, c);
+                if (required > 0) {
+                    max = Math.min(max,
+                            data.getStackAt(r, c).getQuantity() / required);
                 }
             }
-            if (done != taken) {
-                // bahasdasd?
-                return null;
-            }
-            return next;
-        });
+        }
+        // a recipe of nothing can't be applied
+        return max == Integer.MAX_VALUE ? 0 : max;
     }
 
     @Override
-    default CraftingData removeItemsForOneApply(CraftingData data,
+    default CraftingData applyN(CraftingData data, int times,
             Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
-        ItemStackSnapshot[][] layout = data.getAsLayout();
+        checkArgument(times >= 0, "times cannot be negative");
+        if (times == 0) {
+            return data;
+        }
+        if (maxApplications(data) < times) {
+            throw new IllegalArgumentException("Cannot apply " + times
+                    + " time" + (times == 1 ? "" : "s"));
+        }
+        ItemStackSnapshot[][] layout = data.getAsLayout(false);
         for (int r = 0; r < getRows(); r++) {
             for (int c = 0; c < getCols(); c++) {
-                ItemStackSnapshot recipeStack = getStackAt(r, c).copy();
-                ItemStackSnapshot layoutStack = layout[r][c];
-                ItemStackSnapshot containerItem = getContainerItem.apply(layoutStack);
-                if (containerItem != null) {
-                    int q = layoutStack.getQuantity();
-                    layoutStack = containerItem.copy().withQuantity(q);
-                }
-                if (!recipeStack.equalIgnoringSize(layoutStack)
-                        || (layoutStack.getQuantity()
-                                - recipeStack.getQuantity()) < 0) {
-                    throw new IllegalArgumentException("Cannot apply once");
-                }
-                while (recipeStack.getQuantity() > 0
-                        && layoutStack.getQuantity() > 0) {
-                    layoutStack = layoutStack.withQuantityChange(-1);
-                    recipeStack = recipeStack.withQuantityChange(-1);
+                int required = getRequiredQuantity(r, c);
+                if (required == 0) {
+                    continue;
                 }
+                ItemStackSnapshot layoutStack = layout[r][c];
+                int left = layoutStack.getQuantity() - times * required;
+                layout[r][c] = left > 0 ? layoutStack.withQuantity(left)
+                        : getContainerItem.apply(layoutStack);
             }
         }
         return data.withLayout(layout);
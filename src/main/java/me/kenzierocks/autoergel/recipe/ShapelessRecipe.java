@@ -0,0 +1,160 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+/**
+ * A recipe that only cares which items are in the grid, not where they are.
+ * Every ingredient takes up one occupied cell, and the grid may not contain
+ * anything else.
+ */
+public interface ShapelessRecipe extends Recipe {
+
+    List<ItemStackSnapshot> getIngredients();
+
+    ItemStackSnapshot translateListToOutput(List<ItemStackSnapshot> asList);
+
+    /**
+     * The quantity consumed from the cell paired with the given ingredient for
+     * one application, at least one item.
+     */
+    default int getRequiredQuantity(int ingredient) {
+        return Math.max(1, getIngredients().get(ingredient).getQuantity());
+    }
+
+    /**
+     * Pairs every ingredient with one of the occupied stacks in
+     * {@code stacks}. Empty stacks and {@code null}s are skipped.
+     * 
+     * @return For each ingredient, the index of its stack in {@code stacks},
+     *         or {@code null} if the stacks don't match
+     */
+    default int[] pairIngredients(List<ItemStackSnapshot> stacks) {
+        List<ItemStackSnapshot> ingredients = getIngredients();
+        int[] pairs = new int[ingredients.size()];
+        boolean[] used = new boolean[stacks.size()];
+        int occupied = 0;
+        for (int j = 0; j < used.length; j++) {
+            if (GridSignature.isEmpty(stacks.get(j))) {
+                used[j] = true;
+            } else {
+                occupied++;
+            }
+        }
+        if (occupied != pairs.length) {
+            return null;
+        }
+        ingredients: for (int i = 0; i < pairs.length; i++) {
+            ItemStackSnapshot ingredient = ingredients.get(i);
+            for (int j = 0; j < used.length; j++) {
+                ItemStackSnapshot stack = stacks.get(j);
+                if (!used[j] && ingredient.equalIgnoringSize(stack)) {
+                    used[j] = true;
+                    pairs[i] = j;
+                    continue ingredients;
+                }
+            }
+            return null;
+        }
+        return pairs;
+    }
+
+    @Override
+    default Optional<ItemStackSnapshot> tryToApplyRecipe(CraftingData data) {
+        if (pairIngredients(data.getAsList()) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(translateListToOutput(data.getAsList()));
+    }
+
+    @Override
+    default int maxApplications(CraftingData data) {
+        List<ItemStackSnapshot> stacks = data.getAsList();
+        int[] pairs = pairIngredients(stacks);
+        if (pairs == null || pairs.length == 0) {
+            return 0;
+        }
+        int max = Integer.MAX_VALUE;
+        for (int i = 0; i < pairs.length; i++) {
+            max = Math.min(max, stacks.get(pairs[i]).getQuantity()
+                    / getRequiredQuantity(i));
+        }
+        return max;
+    }
+
+    @Override
+    default CraftingData applyN(CraftingData data, int times,
+            Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+        checkArgument(times >= 0, "times cannot be negative");
+        if (times == 0) {
+            return data;
+        }
+        ItemStackSnapshot[][] layout = data.getAsLayout(false);
+        int cols = data.getCols();
+        int[] pairs = pairIngredients(Stream.of(layout).flatMap(Stream::of)
+                .collect(Collectors.toList()));
+        int[] left = new int[pairs == null ? 0 : pairs.length];
+        for (int i = 0; i < left.length; i++) {
+            int cell = pairs[i];
+            left[i] = layout[cell / cols][cell % cols].getQuantity()
+                    - getRequiredQuantity(i) * times;
+        }
+        if (pairs == null || pairs.length == 0
+                || IntStream.of(left).anyMatch(x -> x < 0)) {
+            throw new IllegalArgumentException("Cannot apply " + times
+                    + " time" + (times == 1 ? "" : "s"));
+        }
+        for (int i = 0; i < pairs.length; i++) {
+            int r = pairs[i] / cols;
+            int c = pairs[i] % cols;
+            layout[r][c] = left[i] > 0 ? layout[r][c].withQuantity(left[i])
+                    : getContainerItem.apply(layout[r][c]);
+        }
+        return data.withLayout(layout);
+    }
+
+    interface SingleOutput extends ShapelessRecipe {
+
+        ItemStackSnapshot getOutput();
+
+        @Override
+        default ItemStackSnapshot
+                translateListToOutput(List<ItemStackSnapshot> asList) {
+            return getOutput();
+        }
+
+    }
+
+}
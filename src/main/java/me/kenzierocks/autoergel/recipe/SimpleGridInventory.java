@@ -0,0 +1,188 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+/**
+ * An array backed {@link GridBasedInventory} that indexes its slots by item
+ * type, so removing items only visits the slots that hold them instead of
+ * scanning the whole grid.
+ * 
+ * <p>
+ * Empty slots, including stacks of {@link ItemType#NONE} or with no items
+ * left, are stored as {@code null}. {@link #getSlot(int, int)} returns the
+ * stored stack itself so that matching doesn't copy every slot; change its
+ * item only through {@link #setSlot(int, int, ItemStack)}, or the index will
+ * be out of date. Instances are not thread-safe.
+ * </p>
+ */
+public final class SimpleGridInventory implements GridBasedInventory {
+
+    private static boolean isEmpty(ItemStack stack) {
+        return GridSignature.isEmpty(stack) || stack.getQuantity() <= 0;
+    }
+
+    private final int width;
+    private final int height;
+    private final ItemStack[] slots;
+    /**
+     * The occupied slot indexes for each item type, in slot order.
+     */
+    private final Map<ItemType, BitSet> slotsByType = new HashMap<>();
+
+    public SimpleGridInventory(int width, int height) {
+        checkArgument(width >= 0, "width cannot be negative");
+        checkArgument(height >= 0, "height cannot be negative");
+        this.width = width;
+        this.height = height;
+        this.slots = new ItemStack[width * height];
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    private int slot(int x, int y) {
+        checkElementIndex(x, this.width, "x");
+        checkElementIndex(y, this.height, "y");
+        return y * this.width + x;
+    }
+
+    @Override
+    public ItemStack getSlot(int x, int y) {
+        return this.slots[slot(x, y)];
+    }
+
+    @Override
+    public void setSlot(int x, int y, ItemStack item) {
+        put(slot(x, y), isEmpty(item) ? null : item.copy());
+    }
+
+    private void put(int slot, ItemStack stack) {
+        ItemStack old = this.slots[slot];
+        if (old != null) {
+            BitSet indexed = this.slotsByType.get(old.getItem());
+            indexed.clear(slot);
+            if (indexed.isEmpty()) {
+                this.slotsByType.remove(old.getItem());
+            }
+        }
+        this.slots[slot] = stack;
+        if (stack != null) {
+            this.slotsByType
+                    .computeIfAbsent(stack.getItem(), k -> new BitSet())
+                    .set(slot);
+        }
+    }
+
+    /**
+     * @return The total quantity of {@code type} in this inventory
+     */
+    public int getQuantity(ItemType type) {
+        BitSet indexed = this.slotsByType.get(type);
+        if (indexed == null) {
+            return 0;
+        }
+        int total = 0;
+        for (int i = indexed.nextSetBit(0); i >= 0; i =
+                indexed.nextSetBit(i + 1)) {
+            total += this.slots[i].getQuantity();
+        }
+        return total;
+    }
+
+    /**
+     * Takes from the slots holding the item of {@code stack} in slot order,
+     * {@code (0, 0)} first and then along the rows.
+     */
+    @Override
+    public ItemStack removeStack(ItemStack stack) {
+        checkNotNull(stack, "stack cannot be null");
+        ItemStack leftovers = stack.copy();
+        leftovers.setQuantity(drain(stack.getItem(), stack.getQuantity()));
+        return leftovers;
+    }
+
+    /**
+     * Removes every stack of {@code stacks} as in {@link #removeStack}. Each
+     * slot is visited at most once per item type: slots that are emptied
+     * leave the index, so later stacks of the same item continue where the
+     * previous one stopped.
+     * 
+     * @return The leftovers of each stack, in the order of {@code stacks}
+     */
+    public List<ItemStack> removeStacks(Collection<ItemStack> stacks) {
+        checkNotNull(stacks, "stacks cannot be null");
+        ImmutableList.Builder<ItemStack> leftovers = ImmutableList.builder();
+        for (ItemStack stack : stacks) {
+            leftovers.add(removeStack(stack));
+        }
+        return leftovers.build();
+    }
+
+    /**
+     * @return The amount that could not be removed
+     */
+    private int drain(ItemType type, int amount) {
+        BitSet indexed = this.slotsByType.get(type);
+        if (indexed == null) {
+            return amount;
+        }
+        for (int i = indexed.nextSetBit(0); i >= 0 && amount > 0; i =
+                indexed.nextSetBit(i + 1)) {
+            ItemStack slot = this.slots[i];
+            int available = slot.getQuantity();
+            if (available > amount) {
+                slot.setQuantity(available - amount);
+                return 0;
+            }
+            amount -= available;
+            // may drop the bitset from the index, iteration still works on it
+            put(i, null);
+        }
+        return amount;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class CompactDataContainerTest {
+
+    private static final DataQuery NAME = DataQuery.of("name");
+    private static final DataQuery COUNT = DataQuery.of("count");
+    private static final DataQuery IDS = DataQuery.of("ids");
+
+    private static DataContainer fill(DataContainer container) {
+        return container.set(NAME, "stone").set(COUNT, 3)
+                .set(IDS, ImmutableList.of(1, 2, 3));
+    }
+
+    @Test
+    public void equalsMemoryContainerWithSameContent() {
+        DataContainer compact = fill(new CompactDataContainer());
+        DataContainer memory = fill(new MemoryDataContainer());
+        assertEquals(memory, compact);
+        assertEquals(compact, memory);
+        assertEquals(memory.hashCode(), compact.hashCode());
+    }
+
+    @Test
+    public void packedListIsNotRebuiltOnEveryGet() {
+        DataContainer compact = fill(new CompactDataContainer());
+        assertSame(compact.get(IDS).get(), compact.get(IDS).get());
+    }
+
+    @Test
+    public void entriesWriteThrough() {
+        CompactDataMap map = new CompactDataMap();
+        map.put("a", 1);
+        map.put("b", ImmutableList.of(1L, 2L));
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getKey().equals("a")) {
+                assertEquals(1, entry.setValue(5));
+                assertEquals(5, entry.getValue());
+            }
+        }
+        assertEquals(5, map.get("a"));
+        assertEquals(ImmutableList.of(1L, 2L), map.get("b"));
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class DataQueryTest {
+
+    private static void assertSplitsLikeRegex(char separator, String path) {
+        assertEquals(path,
+                ImmutableList.copyOf(path.split(
+                        Pattern.quote(String.valueOf(separator)))),
+                DataQuery.of(separator, path).getParts());
+    }
+
+    @Test
+    public void splitsLikeStringSplit() {
+        assertSplitsLikeRegex('.', "a.b.c");
+        assertSplitsLikeRegex('.', "a..b");
+        assertSplitsLikeRegex('.', ".a");
+        assertSplitsLikeRegex('.', "a.b..");
+        assertSplitsLikeRegex('.', "abc");
+        assertSplitsLikeRegex('.', "");
+        assertSplitsLikeRegex('|', "x|y");
+    }
+
+    @Test
+    public void separatorsOnlyIsEmpty() {
+        assertSame(DataQuery.of(), DataQuery.of('.', "..."));
+        assertEquals(0, DataQuery.of('.', "...").getDepth());
+    }
+
+    @Test
+    public void singlePartsAreInterned() {
+        assertSame(DataQuery.of("key"), DataQuery.of('.', "key"));
+        assertSame(DataQuery.of("key"),
+                DataQuery.of(ImmutableList.of("key")));
+        DataQuery deep = DataQuery.of('.', "a.key");
+        assertSame(DataQuery.of("key"), deep.getQueryParts().get(1));
+        assertSame(DataQuery.of("key"), deep.getTail());
+    }
+
+    @Test
+    public void internReturnsTheCanonicalQuery() {
+        DataQuery first = DataQuery.of("a", "b");
+        DataQuery second = DataQuery.of('/', "a/b");
+        assertEquals(first, second);
+        assertSame(first.intern(), second.intern());
+        assertSame(DataQuery.of(), DataQuery.of(ImmutableList.of()).intern());
+    }
+
+    @Test
+    public void decompositionIsCached() {
+        DataQuery query = DataQuery.of('.', "a.b.c");
+        assertEquals(3, query.getDepth());
+        assertEquals("a", query.getHead());
+        assertEquals(DataQuery.of("b", "c"), query.getTail());
+        assertSame(query.getTail(), query.getTail());
+        assertSame(query.getQueryParts(), query.getQueryParts());
+        assertSame(DataQuery.of(), query.getTail().getTail().getTail());
+    }
+
+    @Test
+    public void thenJoinsParts() {
+        DataQuery query = DataQuery.of("a").then(DataQuery.of('.', "b.c"));
+        assertEquals(DataQuery.of("a", "b", "c"), query);
+        assertEquals(query.hashCode(), DataQuery.of("a", "b", "c").hashCode());
+        assertEquals("a/b/c", query.asString('/'));
+        assertSame(query, query.then(DataQuery.of()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyQueryHasNoHead() {
+        DataQuery.of().getHead();
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Test;
+
+public class MemoryDataViewTest {
+
+    private static final DataQuery DEEP = DataQuery.of('.', "a.b.c.d");
+
+    private final DataContainer container = new MemoryDataContainer();
+
+    @Test
+    public void setCreatesEveryParentView() {
+        this.container.set(DEEP, "value");
+        assertEquals("value", this.container.get(DEEP).get());
+        assertTrue(this.container.contains(DEEP));
+        DataView c = this.container.getView(DataQuery.of('.', "a.b.c")).get();
+        assertEquals(DataQuery.of('.', "a.b.c"), c.getCurrentPath());
+        assertEquals("c", c.getName());
+        assertSame(this.container, c.getContainer());
+        assertSame(this.container.getView(DataQuery.of('.', "a.b")).get(),
+                c.getParent().get());
+        assertEquals("value", c.get(DataQuery.of("d")).get());
+    }
+
+    @Test
+    public void missingPathsAreAbsent() {
+        this.container.set(DEEP, "value");
+        assertFalse(this.container.contains(DataQuery.of('.', "a.x.c.d")));
+        assertFalse(this.container.contains(DataQuery.of('.', "a.b.c.x")));
+        assertFalse(this.container.get(DataQuery.of('.', "x.b")).isPresent());
+        assertFalse(this.container.get(DataQuery.of('.', "a.b.c.d.e"))
+                .isPresent());
+        // walking never creates views on the way
+        assertFalse(this.container.contains(DataQuery.of("x")));
+    }
+
+    @Test
+    public void valuesAreNotWalkedThrough() {
+        this.container.set(DataQuery.of('.', "a.b"), 5);
+        assertFalse(this.container.get(DataQuery.of('.', "a.b.c"))
+                .isPresent());
+        assertFalse(this.container.contains(DataQuery.of('.', "a.b.c")));
+        this.container.set(DataQuery.of('.', "a.b.c"), 6);
+        assertEquals(6, this.container.get(DataQuery.of('.', "a.b.c")).get());
+    }
+
+    @Test
+    public void emptyQueryGetsTheViewItself() {
+        assertSame(this.container, this.container.get(DataQuery.of()).get());
+    }
+
+    @Test
+    public void removeOnlyDropsTheLastPart() {
+        this.container.set(DEEP, "value");
+        this.container.set(DataQuery.of('.', "a.b.e"), "other");
+        this.container.remove(DEEP);
+        assertFalse(this.container.contains(DEEP));
+        assertTrue(this.container.contains(DataQuery.of('.', "a.b.c")));
+        assertEquals("other",
+                this.container.get(DataQuery.of('.', "a.b.e")).get());
+        // removing a missing path does nothing
+        this.container.remove(DataQuery.of('.', "x.y"));
+        assertFalse(this.container.contains(DataQuery.of("x")));
+    }
+
+    @Test
+    public void createViewReplacesTheLastPart() {
+        this.container.set(DEEP, "value");
+        DataView view = this.container.createView(DataQuery.of('.', "a.b"));
+        assertEquals(DataQuery.of('.', "a.b"), view.getCurrentPath());
+        assertFalse(this.container.contains(DEEP));
+        view.set(DataQuery.of("x"), 1);
+        assertEquals(1, this.container.get(DataQuery.of('.', "a.b.x")).get());
+    }
+
+    @Test
+    public void arraysAreCopiedByDefault() {
+        int[] array = { 1, 2, 3 };
+        this.container.set(DEEP, array);
+        array[0] = 9;
+        int[] stored = (int[]) this.container.get(DEEP).get();
+        assertArrayEquals(new int[] { 1, 2, 3 }, stored);
+        stored[1] = 9;
+        assertNotSame(stored, this.container.get(DEEP).get());
+        assertArrayEquals(new int[] { 1, 2, 3 },
+                (int[]) this.container.get(DEEP).get());
+    }
+
+    @Test
+    public void ownedArraysAreSharedWithBuffers() {
+        byte[] array = { 1, 2, 3 };
+        this.container.setOwned(DEEP, array);
+        ByteBuffer buffer = this.container.getByteBuffer(DEEP).get();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(3, buffer.remaining());
+        array[0] = 7;
+        assertEquals(7, buffer.get(0));
+    }
+
+    @Test
+    public void buffersOnlyMatchTheirArrayType() {
+        this.container.set(DEEP, new int[] { 4, 5 });
+        IntBuffer buffer = this.container.getIntBuffer(DEEP).get();
+        assertEquals(5, buffer.get(1));
+        assertFalse(this.container.getByteBuffer(DEEP).isPresent());
+        assertFalse(this.container.getLongBuffer(DEEP).isPresent());
+        assertFalse(this.container.getIntBuffer(DataQuery.of("x"))
+                .isPresent());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void buffersCannotWriteThrough() {
+        this.container.set(DEEP, new int[] { 4, 5 });
+        this.container.getIntBuffer(DEEP).get().put(0, 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setOwnedRejectsNonArrays() {
+        this.container.setOwned(DEEP, "value");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setRejectsTheEmptyQuery() {
+        this.container.set(DataQuery.of(), "value");
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data.translator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataQuery;
+import me.kenzierocks.autoergel.osadata.data.DataView;
+import me.kenzierocks.autoergel.osadata.data.MemoryDataContainer;
+import me.kenzierocks.autoergel.util.BenchmarkTimer;
+
+/**
+ * {@link BinaryDataTranslator} against Gson on item-like records, writing
+ * to and reading from bytes.
+ */
+public class BinaryDataTranslatorBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private static final Gson GSON = new Gson();
+
+    private static DataContainer record(int i) {
+        DataContainer record = new MemoryDataContainer()
+                .set(DataQuery.of("ItemType"), "minecraft:stone")
+                .set(DataQuery.of("Count"), 1 + i % 64)
+                .set(DataQuery.of("UnsafeDamage"), i % 16);
+        record.createView(DataQuery.of("display"))
+                .set(DataQuery.of("Name"), "Stone #" + i)
+                .set(DataQuery.of("Lore"),
+                        ImmutableList.of("first line", "second line"));
+        record.set(DataQuery.of("ench"),
+                ImmutableList.of(ImmutableMap.of("id", 16, "lvl", 1 + i % 5),
+                        ImmutableMap.of("id", 34, "lvl", 3)));
+        record.set(DataQuery.of("ids"), new int[] { i, i + 1, i + 2, i + 3 });
+        return record;
+    }
+
+    /**
+     * The nested maps a JSON writer needs, which the binary translator
+     * doesn't build.
+     */
+    private static Map<String, Object> toMap(DataView view) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        view.forEachValue((key, value) -> map.put(key,
+                value instanceof DataView ? toMap((DataView) value) : value));
+        return map;
+    }
+
+    private static byte[] toJson(DataView view) {
+        return GSON.toJson(toMap(view)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static DataContainer fromJson(byte[] json) {
+        Map<?, ?> map = GSON.fromJson(new String(json, StandardCharsets.UTF_8),
+                Map.class);
+        DataContainer container = new MemoryDataContainer();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            DataQuery key = DataQuery.of(entry.getKey().toString());
+            if (entry.getValue() instanceof Map) {
+                container.createView(key, (Map<?, ?>) entry.getValue());
+            } else {
+                container.set(key, entry.getValue());
+            }
+        }
+        return container;
+    }
+
+    private static void report(String name, IntFunction<?> op) {
+        BenchmarkTimer.report(name,
+                BenchmarkTimer.nanosPerOp(RECORDS, op), "ns/record");
+        BenchmarkTimer.report(name,
+                BenchmarkTimer.bytesPerOp(RECORDS, op), "B/record");
+    }
+
+    @Test
+    public void binaryAgainstJson() {
+        DataContainer[] records = new DataContainer[RECORDS];
+        ByteBuffer[] binary = new ByteBuffer[RECORDS];
+        byte[][] json = new byte[RECORDS][];
+        BinaryDataTranslator translator = new BinaryDataTranslator();
+        long binarySize = 0;
+        long jsonSize = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = record(i);
+            binary[i] = translator.translateData(records[i]);
+            json[i] = toJson(records[i]);
+            binarySize += binary[i].remaining();
+            jsonSize += json[i].length;
+        }
+        DataQuery display = DataQuery.of("display");
+        assertEquals(records[7].getView(display),
+                translator.translateFrom(binary[7].duplicate())
+                        .getView(display));
+
+        System.out.println("item records, binary against JSON");
+        BenchmarkTimer.report("binary size", (double) binarySize / RECORDS,
+                "B/record");
+        BenchmarkTimer.report("JSON size", (double) jsonSize / RECORDS,
+                "B/record");
+        ByteBuffer[] out = { ByteBuffer.allocate(4096) };
+        report("binary write", i -> {
+            out[0].clear();
+            out[0] = translator.write(records[i], out[0]);
+            return out[0];
+        });
+        report("JSON write", i -> toJson(records[i]));
+        report("binary read",
+                i -> translator.translateFrom(binary[i].duplicate()));
+        report("JSON read", i -> fromJson(json[i]));
+    }
+
+}
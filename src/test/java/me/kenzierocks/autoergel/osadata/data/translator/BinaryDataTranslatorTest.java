@@ -0,0 +1,107 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.data.translator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.osadata.data.CompactDataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataQuery;
+import me.kenzierocks.autoergel.osadata.data.DataView;
+import me.kenzierocks.autoergel.osadata.data.MemoryDataContainer;
+
+public class BinaryDataTranslatorTest {
+
+    private static final BinaryDataTranslator TRANSLATOR =
+            new BinaryDataTranslator();
+
+    private static DataView roundTrip(DataView view) {
+        ByteBuffer bytes = TRANSLATOR.translateData(view);
+        DataView read = TRANSLATOR.translateFrom(bytes);
+        assertFalse(bytes.hasRemaining());
+        return read;
+    }
+
+    private static Object get(DataView view, String name) {
+        return view.get(DataQuery.of(name)).get();
+    }
+
+    @Test
+    public void primitiveArrays() {
+        boolean[] flags = { true, false, false, true, true, false, true,
+                false, true, true, false };
+        DataContainer container = new MemoryDataContainer()
+                .set(DataQuery.of("bytes"), new byte[] { 1, -2, 3 })
+                .set(DataQuery.of("shorts"),
+                        new short[] { 1, Short.MIN_VALUE, Short.MAX_VALUE })
+                .set(DataQuery.of("ints"), new int[] { 1, -1, 1 << 30 })
+                .set(DataQuery.of("longs"), new long[] { Long.MIN_VALUE, 0 })
+                .set(DataQuery.of("floats"),
+                        new float[] { 1.5f, Float.NaN, -0f })
+                .set(DataQuery.of("doubles"), new double[] { 0.25, -8 })
+                .set(DataQuery.of("flags"), flags)
+                .set(DataQuery.of("none"), new boolean[0]);
+        DataView read = roundTrip(container);
+        assertArrayEquals(new byte[] { 1, -2, 3 },
+                (byte[]) get(read, "bytes"));
+        assertArrayEquals(
+                new short[] { 1, Short.MIN_VALUE, Short.MAX_VALUE },
+                (short[]) get(read, "shorts"));
+        assertArrayEquals(new int[] { 1, -1, 1 << 30 },
+                (int[]) get(read, "ints"));
+        assertArrayEquals(new long[] { Long.MIN_VALUE, 0 },
+                (long[]) get(read, "longs"));
+        assertArrayEquals(new float[] { 1.5f, Float.NaN, -0f },
+                (float[]) get(read, "floats"), 0);
+        assertArrayEquals(new double[] { 0.25, -8 },
+                (double[]) get(read, "doubles"), 0);
+        assertArrayEquals(flags, (boolean[]) get(read, "flags"));
+        assertEquals(0, ((boolean[]) get(read, "none")).length);
+    }
+
+    @Test
+    public void nestedValues() {
+        DataContainer container = new CompactDataContainer()
+                .set(DataQuery.of("name"), "stone")
+                .set(DataQuery.of("count"), -3)
+                .set(DataQuery.of("ids"), ImmutableList.of(1, 2, 3))
+                .set(DataQuery.of("child", "big"), Long.MAX_VALUE);
+        DataView read = roundTrip(container);
+        assertEquals("stone", get(read, "name"));
+        assertEquals(-3, get(read, "count"));
+        assertEquals(ImmutableList.of(1, 2, 3), get(read, "ids"));
+        assertEquals(Long.MAX_VALUE,
+                read.get(DataQuery.of("child", "big")).get());
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.osadata.util.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.DataQuery;
+import me.kenzierocks.autoergel.osadata.data.DataSerializable;
+import me.kenzierocks.autoergel.osadata.data.MemoryDataContainer;
+
+public class BinaryDataSourceTest {
+
+    private static final DataQuery NAME = DataQuery.of("name");
+
+    private static DataSerializable record(String name) {
+        return new DataSerializable() {
+
+            @Override
+            public int getContentVersion() {
+                return 1;
+            }
+
+            @Override
+            public DataContainer toContainer() {
+                return new MemoryDataContainer().set(NAME, name);
+            }
+
+        };
+    }
+
+    private static BinaryDataSource reading(byte[] bytes) {
+        return BinaryDataSource.reading(
+                Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    private static byte[] lengthPrefix(int length, int bodyBytes)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(length);
+        out.write(new byte[bodyBytes]);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void recordsLargerThanTheBufferRoundTrip() {
+        String big = Strings.repeat("stone", 2000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryDataSource out =
+                BinaryDataSource.writing(Channels.newChannel(bytes));
+        out.serialize(record("small"));
+        out.serialize(record(big));
+        out.serialize(record("small again"));
+        BinaryDataSource in = reading(bytes.toByteArray());
+        assertEquals("small", in.deserialize().get().get(NAME).get());
+        assertEquals(big, in.deserialize().get().get(NAME).get());
+        assertEquals("small again", in.deserialize().get().get(NAME).get());
+        assertFalse(in.deserialize().isPresent());
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void recordLongerThanTheMaximum() throws IOException {
+        BinaryDataSource in = reading(lengthPrefix(2048, 2048));
+        in.setMaxRecordSize(1024);
+        in.deserialize();
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void lengthPrefixLongerThanTheStream() throws IOException {
+        BinaryDataSource in = reading(lengthPrefix(Integer.MAX_VALUE, 16));
+        in.setMaxRecordSize(Integer.MAX_VALUE);
+        in.deserialize();
+    }
+
+}
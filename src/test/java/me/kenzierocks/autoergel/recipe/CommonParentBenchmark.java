@@ -0,0 +1,96 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import org.junit.Test;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.util.BenchmarkTimer;
+
+/**
+ * The class hierarchy check behind
+ * {@link ItemStackSnapshot#equalIgnoringSize}, before and after it started
+ * with a plain class compare.
+ */
+public class CommonParentBenchmark {
+
+    private static final int OPS = 100000;
+
+    /**
+     * The check as it was, reflecting in both directions on every call.
+     */
+    private static boolean reflective(Object a, Object b) {
+        Class<?> aC = a.getClass();
+        Class<?> bC = b.getClass();
+        return aC.isAssignableFrom(bC) || bC.isAssignableFrom(aC);
+    }
+
+    /**
+     * A copy of the current check, which can't be called from here.
+     */
+    private static boolean sameClassFirst(Object a, Object b) {
+        Class<?> aC = a.getClass();
+        Class<?> bC = b.getClass();
+        if (aC == bC) {
+            return true;
+        }
+        return aC.isAssignableFrom(bC) || bC.isAssignableFrom(aC);
+    }
+
+    private static void compare(String name, ItemStackSnapshot[] as,
+            ItemStackSnapshot[] bs) {
+        int mask = as.length - 1;
+        BenchmarkTimer.report(name + ", reflective",
+                BenchmarkTimer.nanosPerOp(OPS,
+                        i -> reflective(as[i & mask], bs[i & mask])),
+                "ns/check");
+        BenchmarkTimer.report(name + ", same class first",
+                BenchmarkTimer.nanosPerOp(OPS,
+                        i -> sameClassFirst(as[i & mask], bs[i & mask])),
+                "ns/check");
+        BenchmarkTimer.report(name + ", equalIgnoringSize",
+                BenchmarkTimer.nanosPerOp(OPS,
+                        i -> as[i & mask].equalIgnoringSize(bs[i & mask])),
+                "ns/call");
+    }
+
+    @Test
+    public void sameClassFirstAgainstReflective() {
+        ItemStackSnapshot[] plain = new ItemStackSnapshot[64];
+        ItemStackSnapshot[] live = new ItemStackSnapshot[64];
+        ItemStackSnapshot[] foreign = new ItemStackSnapshot[64];
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = TestItems.stack(TestItems.STONE, 1 + i);
+            live[i] = TestItems.itemStack(TestItems.STONE, 1 + i)
+                    .createSnapshot();
+            foreign[i] = TestItems.foreignStack(TestItems.STONE, 1 + i);
+        }
+        System.out.println("common parent check on snapshot pairs");
+        compare("same class", plain, plain.clone());
+        compare("subclass", plain, live);
+        compare("unrelated", live, foreign);
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class CommonParentTest {
+
+    private static final ItemStackSnapshot PLAIN =
+            TestItems.stack(TestItems.STONE, 1);
+    private static final ItemStackSnapshot LIVE =
+            TestItems.itemStack(TestItems.STONE, 1).createSnapshot();
+    private static final ItemStackSnapshot FOREIGN =
+            TestItems.foreignStack(TestItems.STONE, 1);
+
+    @Test
+    public void sameClassIsComparable() {
+        assertTrue(PLAIN.equalIgnoringSize(TestItems.stack(TestItems.STONE, 5)));
+        assertTrue(FOREIGN
+                .equalIgnoringSize(TestItems.foreignStack(TestItems.STONE, 5)));
+    }
+
+    @Test
+    public void subclassesAreComparableBothWays() {
+        assertTrue(PLAIN.equalIgnoringSize(LIVE));
+        assertTrue(LIVE.equalIgnoringSize(PLAIN));
+        assertTrue(PLAIN.equalIgnoringSize(FOREIGN));
+        assertTrue(FOREIGN.equalIgnoringSize(PLAIN));
+    }
+
+    @Test
+    public void unrelatedClassesAreNeverEqual() {
+        assertFalse(LIVE.equalIgnoringSize(FOREIGN));
+        assertFalse(FOREIGN.equalIgnoringSize(LIVE));
+    }
+
+}
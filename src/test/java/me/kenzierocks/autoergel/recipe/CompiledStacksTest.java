@@ -0,0 +1,95 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import me.kenzierocks.autoergel.osadata.data.manipulator.ImmutableDataManipulator;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class CompiledStacksTest {
+
+    private static final ImmutableDataManipulator<?, ?> DATA =
+            TestItems.manipulator();
+
+    @Test
+    public void slotAndSnapshotPathsAgree() {
+        ImmutableList<Collection<ImmutableDataManipulator<?, ?>>> data =
+                ImmutableList.of(ImmutableList.of(), ImmutableSet.of(),
+                        ImmutableList.of(DATA), ImmutableSet.of(DATA),
+                        ImmutableList.of(TestItems.manipulator()));
+        ImmutableList.Builder<ItemStackSnapshot> cells =
+                ImmutableList.builder();
+        ImmutableList.Builder<ItemStack> slots = ImmutableList.builder();
+        cells.add(ItemStackSnapshot.getNoneStack());
+        slots.add(TestItems.itemStack(TestItems.NONE, 0, ImmutableList.of()));
+        for (Collection<ImmutableDataManipulator<?, ?>> containers : data) {
+            cells.add(TestItems.stack(TestItems.STONE, 1, containers));
+            cells.add(TestItems.stack(TestItems.STICK, 1, containers));
+            slots.add(TestItems.itemStack(TestItems.STONE, 2, containers));
+            slots.add(TestItems.itemStack(TestItems.STICK, 2, containers));
+        }
+        CompiledStacks compiled = new CompiledStacks(
+                cells.build().toArray(new ItemStackSnapshot[0]));
+        for (int i = 0; i < compiled.size(); i++) {
+            assertEquals(compiled.matches(i, (ItemStackSnapshot) null),
+                    compiled.matches(i, (ItemStack) null));
+            for (ItemStack slot : slots.build()) {
+                assertEquals(i + " against " + slot,
+                        compiled.matches(i, CraftingData.snapshotOf(slot)),
+                        compiled.matches(i, slot));
+            }
+        }
+    }
+
+    @Test
+    public void plainSlotDoesNotMatchOtherEmptyContainers() {
+        CompiledStacks compiled = new CompiledStacks(new ItemStackSnapshot[] {
+                TestItems.stack(TestItems.STONE, 1, ImmutableSet.of()) });
+        assertFalse(compiled.matches(0,
+                TestItems.itemStack(TestItems.STONE, 1, ImmutableList.of())));
+    }
+
+    @Test
+    public void slotDataIsComparedAcrossSnapshotClasses() {
+        CompiledStacks compiled = new CompiledStacks(new ItemStackSnapshot[] {
+                TestItems.stack(TestItems.STONE, 1, ImmutableList.of(DATA)) });
+        assertTrue(compiled.matches(0, TestItems.itemStack(TestItems.STONE, 3,
+                ImmutableList.of(DATA))));
+        assertFalse(compiled.matches(0, TestItems.itemStack(TestItems.STONE,
+                3, ImmutableList.of(TestItems.manipulator()))));
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.CountingRecipeMetrics.RecipeStats;
+
+public class CountingRecipeMetricsTest {
+
+    private static final Recipe RECIPE = new DefaultShapelessRecipe(
+            ImmutableList.of(TestItems.stack(TestItems.STONE, 1)),
+            TestItems.stack(TestItems.IRON, 1));
+
+    private static final CraftingData GRID = new CraftingData(
+            new ItemStackSnapshot[][] {
+                    { TestItems.stack(TestItems.STONE, 1) } },
+            ImmutableList.of(TestItems.stack(TestItems.STONE, 1)));
+
+    @Test
+    public void recipeLatencyIsOptIn() {
+        CountingRecipeMetrics metrics = new CountingRecipeMetrics();
+        metrics.attempt(RECIPE, true, 100);
+        RecipeStats stats = metrics.snapshot().getRecipes().get(RECIPE);
+        assertEquals(1, stats.getHits());
+        assertFalse(stats.getLatency().isPresent());
+
+        metrics = new CountingRecipeMetrics(true);
+        metrics.attempt(RECIPE, true, 100);
+        stats = metrics.snapshot().getRecipes().get(RECIPE);
+        assertEquals(1, stats.getLatency().get().getCount());
+        assertEquals(128,
+                stats.getLatency().get().getPercentileUpperBoundNanos(1));
+    }
+
+    @Test
+    public void removingARecipeDropsItsCounts() {
+        CountingRecipeMetrics metrics = new CountingRecipeMetrics(true);
+        RecipeManager manager = new RecipeManager(0, metrics);
+        manager.addRecipe(RECIPE);
+        assertTrue(manager.produceResult(GRID).isPresent());
+        assertTrue(metrics.snapshot().getRecipes().containsKey(RECIPE));
+        assertTrue(manager.removeRecipe(RECIPE));
+        assertTrue(metrics.snapshot().getRecipes().isEmpty());
+        assertEquals(1, metrics.snapshot().getLookups().getLookups());
+    }
+
+}
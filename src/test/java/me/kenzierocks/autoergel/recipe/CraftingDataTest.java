@@ -0,0 +1,185 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.osadata.util.Tuple;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class CraftingDataTest {
+
+    private static final ItemStackSnapshot NONE =
+            ItemStackSnapshot.getNoneStack();
+
+    private static CraftingData grid(ItemStackSnapshot[][] layout) {
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (ItemStackSnapshot[] row : layout) {
+            for (ItemStackSnapshot stack : row) {
+                if (stack != null && !GridSignature.isEmpty(stack)) {
+                    list.add(stack);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    /**
+     * A 3x3 grid of stones, where the quantity is {@code 1 + r * 3 + c}.
+     */
+    private static CraftingData numbered() {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[3][3];
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                layout[r][c] = TestItems.stack(TestItems.STONE, 1 + r * 3 + c);
+            }
+        }
+        return grid(layout);
+    }
+
+    @Test
+    public void subGridSharesTheCells() {
+        CraftingData grid = numbered();
+        CraftingData sub = grid.subGrid(1, 1, 2, 2);
+        assertEquals(2, sub.getRows());
+        assertEquals(2, sub.getCols());
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 2; c++) {
+                assertSame(grid.getStackAt(r + 1, c + 1), sub.getStackAt(r, c));
+            }
+        }
+        CraftingData corner = sub.subGrid(1, 0, 1, 2);
+        assertSame(grid.getStackAt(2, 1), corner.getStackAt(0, 0));
+        assertSame(grid.getStackAt(2, 2), corner.getStackAt(0, 1));
+    }
+
+    @Test
+    public void subGridOfEverythingIsTheGrid() {
+        CraftingData grid = numbered();
+        assertSame(grid, grid.subGrid(0, 0, 3, 3));
+    }
+
+    @Test
+    public void viewsDeriveLayoutAndList() {
+        CraftingData sub = numbered().subGrid(0, 1, 3, 2);
+        ItemStackSnapshot[][] layout = sub.getAsLayout(false);
+        assertEquals(3, layout.length);
+        List<ItemStackSnapshot> list = sub.getAsList();
+        assertEquals(6, list.size());
+        int[] quantities = { 2, 3, 5, 6, 8, 9 };
+        for (int i = 0; i < quantities.length; i++) {
+            assertEquals(quantities[i], list.get(i).getQuantity());
+            assertSame(layout[i / 2][i % 2], list.get(i));
+        }
+    }
+
+    @Test
+    public void withStackAtLeavesTheViewAlone() {
+        CraftingData grid = numbered();
+        CraftingData sub = grid.subGrid(1, 1, 2, 2);
+        ItemStackSnapshot stick = TestItems.stack(TestItems.STICK, 1);
+        CraftingData changed = sub.withStackAt(1, 0, stick);
+        assertSame(stick, changed.getStackAt(1, 0));
+        assertSame(sub.getStackAt(0, 0), changed.getStackAt(0, 0));
+        assertEquals(8, sub.getStackAt(1, 0).getQuantity());
+        assertEquals(8, grid.getStackAt(2, 1).getQuantity());
+        assertSame(NONE, changed.withStackAt(0, 0, null).getStackAt(0, 0));
+    }
+
+    @Test
+    public void missingCellsAreTheNoneStack() {
+        CraftingData grid = grid(new ItemStackSnapshot[][] {
+                { TestItems.stack(TestItems.STONE, 1), null },
+                { null, null } });
+        assertSame(NONE, grid.getStackAt(0, 1));
+        assertSame(NONE, grid.getStackAt(1, 0));
+        assertEquals(1, grid.getAsList().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subGridOutOfBounds() {
+        numbered().subGrid(1, 1, 3, 1);
+    }
+
+    @Test
+    public void removeStacksTakesWholeQuantities() {
+        CraftingData grid = grid(new ItemStackSnapshot[][] { {
+                TestItems.stack(TestItems.STONE, 64),
+                TestItems.stack(TestItems.STONE, 10),
+                TestItems.stack(TestItems.STICK, 5) } });
+        Tuple<List<ItemStackSnapshot>, CraftingData> removed =
+                grid.removeStacks(TestItems.stack(TestItems.STONE, 70));
+        assertTrue(removed.getFirst().isEmpty());
+        CraftingData left = removed.getSecond();
+        assertSame(NONE, left.getStackAt(0, 0));
+        assertEquals(4, left.getStackAt(0, 1).getQuantity());
+        assertSame(grid.getStackAt(0, 2), left.getStackAt(0, 2));
+        assertEquals(64, grid.getStackAt(0, 0).getQuantity());
+    }
+
+    @Test
+    public void removeStacksReturnsWhatIsMissing() {
+        CraftingData grid = grid(new ItemStackSnapshot[][] { {
+                TestItems.stack(TestItems.STICK, 5) } });
+        ItemStackSnapshot plank = TestItems.stack(TestItems.PLANK, 2);
+        Tuple<List<ItemStackSnapshot>, CraftingData> removed = grid
+                .removeStacks(TestItems.stack(TestItems.STICK, 8), plank);
+        assertEquals(2, removed.getFirst().size());
+        assertEquals(3, removed.getFirst().get(0).getQuantity());
+        assertSame(plank, removed.getFirst().get(1));
+        assertSame(NONE, removed.getSecond().getStackAt(0, 0));
+    }
+
+    @Test
+    public void removeStacksDrainsEarlierStacksFirst() {
+        CraftingData grid = grid(new ItemStackSnapshot[][] { {
+                TestItems.stack(TestItems.STONE, 64),
+                TestItems.stack(TestItems.STONE, 10) } });
+        Tuple<List<ItemStackSnapshot>, CraftingData> removed =
+                grid.removeStacks(ImmutableList.of(
+                        TestItems.stack(TestItems.STONE, 5),
+                        TestItems.stack(TestItems.STONE, 100)));
+        assertEquals(1, removed.getFirst().size());
+        assertEquals(31, removed.getFirst().get(0).getQuantity());
+        assertSame(NONE, removed.getSecond().getStackAt(0, 1));
+    }
+
+    @Test
+    public void removingNothingKeepsTheGrid() {
+        CraftingData grid = numbered();
+        Tuple<List<ItemStackSnapshot>, CraftingData> removed =
+                grid.removeStacks(TestItems.stack(TestItems.IRON, 1));
+        assertSame(grid, removed.getSecond());
+    }
+
+}
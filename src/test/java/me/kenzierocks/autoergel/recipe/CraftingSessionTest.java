@@ -0,0 +1,124 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class CraftingSessionTest {
+
+    private static final ItemType[] ITEMS = { TestItems.NONE,
+            TestItems.STONE, TestItems.STICK, TestItems.PLANK };
+
+    private static final Recipe TORCH = new DefaultShapedRecipe(
+            new ItemStackSnapshot[][] {
+                    { TestItems.stack(TestItems.STONE, 1) },
+                    { TestItems.stack(TestItems.STICK, 1) } },
+            TestItems.stack(TestItems.IRON, 1), false);
+    private static final Recipe PLANKS = new DefaultShapelessRecipe(
+            ImmutableList.of(TestItems.stack(TestItems.STICK, 1),
+                    TestItems.stack(TestItems.STICK, 1)),
+            TestItems.stack(TestItems.PLANK, 1));
+    private static final Recipe STONE = new DefaultShapelessRecipe(
+            ImmutableList.of(TestItems.stack(TestItems.PLANK, 1),
+                    TestItems.stack(TestItems.STICK, 1)),
+            TestItems.stack(TestItems.STONE, 1));
+
+    private final RecipeManager manager = new RecipeManager();
+    private final SimpleGridInventory inventory = new SimpleGridInventory(3, 3);
+
+    private void set(CraftingSession session, int x, int y, ItemStack stack) {
+        this.inventory.setSlot(x, y, stack);
+        session.slotChanged(x, y, stack);
+    }
+
+    private void assertAgrees(CraftingSession session) {
+        CraftingData data = CraftingData.of(this.inventory);
+        Optional<Recipe> expected = this.manager.findRecipe(data);
+        assertEquals(data.toString(), expected, session.getRecipe());
+        assertEquals(data.toString(), this.manager.produceResult(data),
+                session.getResult());
+    }
+
+    @Test
+    public void movingAnItemKeepsCandidatesButRematches() {
+        this.manager.addRecipes(ImmutableList.of(TORCH, PLANKS, STONE));
+        CraftingSession session = this.manager.openSession(this.inventory);
+        assertFalse(session.getRecipe().isPresent());
+        set(session, 1, 0, TestItems.itemStack(TestItems.STONE, 1));
+        set(session, 1, 1, TestItems.itemStack(TestItems.STICK, 1));
+        assertEquals(Optional.of(TORCH), session.getRecipe());
+        set(session, 1, 1, null);
+        set(session, 2, 0, TestItems.itemStack(TestItems.STICK, 1));
+        assertFalse(session.getRecipe().isPresent());
+        set(session, 1, 0, TestItems.itemStack(TestItems.STICK, 4));
+        assertEquals(Optional.of(PLANKS), session.getRecipe());
+        set(session, 1, 0, TestItems.itemStack(TestItems.PLANK, 4));
+        assertEquals(Optional.of(STONE), session.getRecipe());
+    }
+
+    @Test
+    public void agreesWithFullLookupsThroughRandomChanges() {
+        this.manager.addRecipes(ImmutableList.of(TORCH, PLANKS));
+        CraftingSession session = this.manager.openSession(this.inventory);
+        Random random = new Random(8);
+        for (int step = 0; step < 2000; step++) {
+            int x = random.nextInt(3);
+            int y = random.nextInt(3);
+            ItemType item = ITEMS[random.nextInt(ITEMS.length)];
+            set(session, x, y, item == TestItems.NONE ? null
+                    : TestItems.itemStack(item, 1 + random.nextInt(3)));
+            if (step == 700) {
+                this.manager.addRecipe(STONE);
+            } else if (step == 1400) {
+                this.manager.removeRecipe(PLANKS);
+            }
+            assertAgrees(session);
+        }
+    }
+
+    @Test
+    public void refreshRereadsTheInventory() {
+        this.manager.addRecipe(PLANKS);
+        CraftingSession session = this.manager.openSession(this.inventory);
+        this.inventory.setSlot(0, 0, TestItems.itemStack(TestItems.STICK, 1));
+        this.inventory.setSlot(2, 2, TestItems.itemStack(TestItems.STICK, 1));
+        assertFalse(session.getRecipe().isPresent());
+        session.refresh();
+        assertEquals(Optional.of(PLANKS), session.getRecipe());
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class ItemStackSnapshotTest {
+
+    @Test
+    public void sameEmptyContainersAreEqual() {
+        ItemStackSnapshot a =
+                TestItems.stack(TestItems.STONE, 1, ImmutableList.of());
+        ItemStackSnapshot b =
+                TestItems.stack(TestItems.STONE, 3, ImmutableList.of());
+        assertTrue(a.equalIgnoringSize(b));
+        assertTrue(new CompiledStacks(new ItemStackSnapshot[] { a })
+                .matches(0, b));
+    }
+
+    @Test
+    public void emptyContainersOfDifferentKindsAreNotEqual() {
+        ItemStackSnapshot list =
+                TestItems.stack(TestItems.STONE, 1, ImmutableList.of());
+        ItemStackSnapshot set =
+                TestItems.stack(TestItems.STONE, 1, ImmutableSet.of());
+        assertFalse(list.equalIgnoringSize(set));
+        assertFalse(set.equalIgnoringSize(list));
+        assertFalse(new CompiledStacks(new ItemStackSnapshot[] { list })
+                .matches(0, set));
+    }
+
+    @Test
+    public void differentItemsAreNotEqual() {
+        ItemStackSnapshot stone = TestItems.stack(TestItems.STONE, 1);
+        ItemStackSnapshot stick = TestItems.stack(TestItems.STICK, 1);
+        assertFalse(stone.equalIgnoringSize(stick));
+        assertFalse(new CompiledStacks(new ItemStackSnapshot[] { stone })
+                .matches(0, stick));
+    }
+
+}
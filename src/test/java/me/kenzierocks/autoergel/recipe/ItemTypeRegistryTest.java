@@ -0,0 +1,82 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class ItemTypeRegistryTest {
+
+    @Test
+    public void idsAreDenseWithNoneFirst() {
+        ItemTypeRegistry registry = ItemTypeRegistry.current();
+        assertEquals(ItemTypeRegistry.NONE_ID, registry.getId(ItemType.NONE));
+        Set<Integer> seen = new HashSet<>();
+        for (ItemType type : ItemType.Provider.INSTANCE
+                .getProvidedItemTypes()) {
+            int id = registry.getId(type);
+            assertTrue(id >= 0 && id < registry.size());
+            assertTrue(seen.add(id));
+            assertSame(type, registry.getType(id));
+            assertEquals(id, type.getNumericId());
+        }
+        assertEquals(registry.size(), seen.size());
+    }
+
+    @Test
+    public void extendingKeepsExistingIds() {
+        ItemTypeRegistry registry = ItemTypeRegistry.current();
+        ItemType extra = new ItemType() {
+        };
+        assertEquals(ItemTypeRegistry.UNKNOWN_ID, registry.getId(extra));
+        assertFalse(registry.contains(extra));
+        ItemTypeRegistry extended =
+                registry.extendedWith(ImmutableList.of(TestItems.STONE, extra));
+        assertEquals(registry.size() + 1, extended.size());
+        assertEquals(registry.size(), extended.getId(extra));
+        for (int id = 0; id < registry.size(); id++) {
+            assertSame(registry.getType(id), extended.getType(id));
+        }
+        assertSame(extended, extended.extendedWith(ImmutableList.of(extra)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void idsOutsideTheRegistry() {
+        ItemTypeRegistry registry = ItemTypeRegistry.current();
+        registry.getType(registry.size());
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.DefaultShapedRecipe.PatternBuilder;
+
+public class PatternBuilderTest {
+
+    private static final ItemStackSnapshot STONE =
+            TestItems.stack(TestItems.STONE, 1);
+    private static final ItemStackSnapshot STICK =
+            TestItems.stack(TestItems.STICK, 1);
+
+    private static PatternBuilder builder() {
+        return PatternBuilder.start(TestItems.stack(TestItems.IRON, 1))
+                .link('#', STONE).link('|', STICK);
+    }
+
+    @Test
+    public void blankRowsAndColumnsAreTrimmed() {
+        DefaultShapedRecipe recipe = builder()
+                .pattern("     ",
+                         "  #  ",
+                         "  |  ",
+                         "     ")
+                .build();
+        assertEquals(2, recipe.getRows());
+        assertEquals(1, recipe.getCols());
+        assertSame(STONE, recipe.getStackAt(0, 0));
+        assertSame(STICK, recipe.getStackAt(1, 0));
+    }
+
+    @Test
+    public void innerGapsAreKept() {
+        DefaultShapedRecipe recipe = builder()
+                .pattern(" # # ",
+                         "     ",
+                         " | | ")
+                .build();
+        assertEquals(3, recipe.getRows());
+        assertEquals(3, recipe.getCols());
+        assertTrue(GridSignature.isEmpty(recipe.getStackAt(1, 1)));
+        assertTrue(GridSignature.isEmpty(recipe.getStackAt(0, 1)));
+        assertSame(STICK, recipe.getStackAt(2, 2));
+    }
+
+    @Test
+    public void linksMayFollowThePattern() {
+        DefaultShapedRecipe recipe =
+                PatternBuilder.start(TestItems.stack(TestItems.IRON, 1))
+                        .pattern(".x").link('x', STONE)
+                        .link('.', ItemStackSnapshot.getNoneStack()).build();
+        assertEquals(1, recipe.getRows());
+        assertEquals(1, recipe.getCols());
+        assertSame(STONE, recipe.getStackAt(0, 0));
+    }
+
+    @Test
+    public void duplicateKeepsThePattern() {
+        PatternBuilder original = builder().pattern("#|").mirrored(true);
+        DefaultShapedRecipe copy =
+                original.duplicate().link('|', STONE).build();
+        assertSame(STONE, copy.getStackAt(0, 1));
+        assertTrue(copy.isMirrored());
+        assertSame(STICK, original.build().getStackAt(0, 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void blankPatternIsRejected() {
+        builder().pattern("   ", "   ").build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unlinkedCharacterIsRejected() {
+        builder().pattern("#?").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void raggedPatternIsRejected() {
+        builder().pattern("##", "#");
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class RecipeApplicationTest {
+
+    private static final Function<ItemStackSnapshot, ItemStackSnapshot> USED_UP =
+            stack -> ItemStackSnapshot.getNoneStack();
+
+    private static final DefaultShapedRecipe SHAPED = new DefaultShapedRecipe(
+            new ItemStackSnapshot[][] { {
+                    TestItems.stack(TestItems.STONE, 2),
+                    TestItems.stack(TestItems.STICK, 1) } },
+            TestItems.stack(TestItems.IRON, 1), false);
+
+    private static CraftingData grid(int stones, int sticks) {
+        ItemStackSnapshot[] row = { TestItems.stack(TestItems.STONE, stones),
+                TestItems.stack(TestItems.STICK, sticks) };
+        return new CraftingData(new ItemStackSnapshot[][] { row },
+                ImmutableList.copyOf(row));
+    }
+
+    /**
+     * A recipe written against the original interface, which only knows how
+     * to remove the items for one application.
+     */
+    private static Recipe oneStepAtATime(Recipe recipe) {
+        return new Recipe() {
+
+            @Override
+            public Optional<ItemStackSnapshot>
+                    tryToApplyRecipe(CraftingData data) {
+                return recipe.tryToApplyRecipe(data);
+            }
+
+            @Override
+            public CraftingData removeItemsForOneApply(CraftingData data,
+                    Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+                return recipe.applyN(data, 1, getContainerItem);
+            }
+
+        };
+    }
+
+    @Test
+    public void closedFormCountsWholeApplications() {
+        assertEquals(2, SHAPED.maxApplications(grid(5, 3)));
+        assertEquals(3, SHAPED.maxApplications(grid(7, 3)));
+        assertEquals(0, SHAPED.maxApplications(grid(1, 3)));
+    }
+
+    @Test
+    public void closedFormRemovesAllApplicationsAtOnce() {
+        CraftingData left = SHAPED.applyN(grid(5, 3), 2, USED_UP);
+        assertEquals(1, left.getStackAt(0, 0).getQuantity());
+        assertEquals(1, left.getStackAt(0, 1).getQuantity());
+        left = SHAPED.applyN(grid(4, 2), 2, USED_UP);
+        assertTrue(GridSignature.isEmpty(left.getStackAt(0, 0)));
+        assertTrue(GridSignature.isEmpty(left.getStackAt(0, 1)));
+    }
+
+    @Test
+    public void usedUpCellsTakeTheirContainerItem() {
+        CraftingData left = SHAPED.applyN(grid(4, 3), 2,
+                stack -> TestItems.stack(TestItems.PLANK, 1));
+        assertEquals(TestItems.PLANK, left.getStackAt(0, 0).getItem());
+        assertEquals(1, left.getStackAt(0, 1).getQuantity());
+    }
+
+    @Test
+    public void defaultsAgreeWithClosedForm() {
+        Recipe stepwise = oneStepAtATime(SHAPED);
+        for (int stones = 1; stones < 8; stones++) {
+            for (int sticks = 1; sticks < 4; sticks++) {
+                CraftingData grid = grid(stones, sticks);
+                int max = SHAPED.maxApplications(grid);
+                assertEquals(grid.toString(), max,
+                        stepwise.maxApplications(grid));
+                assertEquals(grid.toString(),
+                        SHAPED.applyN(grid, max, USED_UP),
+                        stepwise.applyN(grid, max, USED_UP));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void closedFormRejectsTooManyApplications() {
+        SHAPED.applyN(grid(5, 3), 3, USED_UP);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void defaultRejectsTooManyApplications() {
+        oneStepAtATime(SHAPED).applyN(grid(5, 3), 3, USED_UP);
+    }
+
+    @Test
+    public void defaultOnResultTakenRemovesTheTakenApplications() {
+        Recipe stepwise = oneStepAtATime(SHAPED);
+        CraftingData grid = grid(2, 1);
+        Optional<CraftingData> left = stepwise.onResultTaken(grid,
+                TestItems.stack(TestItems.IRON, 1), USED_UP);
+        assertTrue(left.isPresent());
+        assertEquals(SHAPED.applyN(grid, 1, USED_UP), left.get());
+    }
+
+}
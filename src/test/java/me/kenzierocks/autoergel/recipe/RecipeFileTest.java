@@ -0,0 +1,169 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.osadata.util.persistence.InvalidDataException;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class RecipeFileTest {
+
+    private static final int MAGIC = 0x41455246;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(this.bytes);
+
+    /**
+     * Writes the header and an item table of {@code none} and {@code stone},
+     * followed by the recipe count.
+     */
+    private void header(int recipes) throws IOException {
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(RecipeFile.VERSION);
+        this.out.writeInt(2);
+        for (String id : ImmutableList.of("none", "stone")) {
+            byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+            this.out.writeInt(utf8.length);
+            this.out.write(utf8);
+        }
+        this.out.writeInt(recipes);
+    }
+
+    private void stack(int item, int quantity) throws IOException {
+        this.out.writeInt(item);
+        this.out.writeInt(quantity);
+        this.out.writeInt(0);
+        this.out.writeInt(0);
+    }
+
+    private List<Recipe> read() throws IOException {
+        this.out.flush();
+        return RecipeFile.read(ByteBuffer.wrap(this.bytes.toByteArray()));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        ItemStackSnapshot stone = TestItems.stack(TestItems.STONE, 1);
+        ItemStackSnapshot none = ItemStackSnapshot.getNoneStack();
+        Recipe shaped = new DefaultShapedRecipe(
+                new ItemStackSnapshot[][] { { stone, none } },
+                TestItems.stack(TestItems.IRON, 1), true);
+        Recipe shapeless = new DefaultShapelessRecipe(
+                ImmutableList.of(stone, stone),
+                TestItems.stack(TestItems.PLANK, 2));
+        RecipeFile.write(ImmutableList.of(shaped, shapeless), this.bytes);
+        List<Recipe> recipes = read();
+        assertEquals(2, recipes.size());
+        DefaultShapedRecipe readShaped = (DefaultShapedRecipe) recipes.get(0);
+        assertTrue(readShaped.isMirrored());
+        assertEquals(1, readShaped.getRows());
+        assertEquals(2, readShaped.getCols());
+        assertTrue(stone.equalIgnoringSize(readShaped.getStackAt(0, 0)));
+        DefaultShapelessRecipe readShapeless =
+                (DefaultShapelessRecipe) recipes.get(1);
+        assertEquals(2, readShapeless.getIngredients().size());
+        assertEquals(2, readShapeless.getOutput().getQuantity());
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void shapelessWithoutIngredients() throws IOException {
+        header(1);
+        this.out.writeByte(1);
+        this.out.writeInt(0);
+        stack(1, 1);
+        read();
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void shapedWithBlankLayout() throws IOException {
+        header(1);
+        this.out.writeByte(0);
+        this.out.writeBoolean(false);
+        this.out.writeInt(1);
+        this.out.writeInt(2);
+        stack(0, 0);
+        stack(0, 0);
+        stack(1, 1);
+        read();
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void itemTableLongerThanFile() throws IOException {
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(RecipeFile.VERSION);
+        this.out.writeInt(Integer.MAX_VALUE);
+        this.out.writeInt(0);
+        read();
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void shapedLayoutLargerThanFile() throws IOException {
+        header(1);
+        this.out.writeByte(0);
+        this.out.writeBoolean(false);
+        this.out.writeInt(1 << 16);
+        this.out.writeInt(1 << 16);
+        stack(1, 1);
+        stack(1, 1);
+        read();
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void shapelessLongerThanFile() throws IOException {
+        header(1);
+        this.out.writeByte(1);
+        this.out.writeInt(Integer.MAX_VALUE);
+        stack(1, 1);
+        stack(1, 1);
+        read();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shapelessConstructorRejectsNoIngredients() {
+        new DefaultShapelessRecipe(ImmutableList.of(),
+                TestItems.stack(TestItems.STONE, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shapedConstructorRejectsBlankLayout() {
+        ItemStackSnapshot none = ItemStackSnapshot.getNoneStack();
+        new DefaultShapedRecipe(new ItemStackSnapshot[][] { { none, none } },
+                TestItems.stack(TestItems.STONE, 1), false);
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+import me.kenzierocks.autoergel.util.BenchmarkTimer;
+
+/**
+ * Lookup cost of {@link RecipeManager} against a linear scan, as the number of
+ * registered shaped recipes grows.
+ */
+public class RecipeLookupBenchmark {
+
+    private static final int[] RECIPE_COUNTS = { 10, 100, 1000, 10000, 100000 };
+    private static final int GRIDS = 256;
+    private static final int TYPES = 32;
+
+    private final ItemStackSnapshot[] stacks = new ItemStackSnapshot[TYPES];
+    private final Random random = new Random(1);
+
+    public RecipeLookupBenchmark() {
+        for (int i = 0; i < TYPES; i++) {
+            this.stacks[i] = TestItems
+                    .stack(TestItems.unregisteredType("ore" + i), 1);
+        }
+    }
+
+    /**
+     * A 3x3 layout with two to nine random cells occupied.
+     */
+    private ItemStackSnapshot[][] randomLayout() {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[3][3];
+        int occupied = 2 + this.random.nextInt(8);
+        for (int i = 0; i < occupied; i++) {
+            layout[this.random.nextInt(3)][this.random.nextInt(3)] =
+                    this.stacks[this.random.nextInt(TYPES)];
+        }
+        for (ItemStackSnapshot[] row : layout) {
+            for (int c = 0; c < row.length; c++) {
+                if (row[c] == null) {
+                    row[c] = ItemStackSnapshot.getNoneStack();
+                }
+            }
+        }
+        return layout;
+    }
+
+    private static String key(ItemStackSnapshot[][] layout) {
+        StringBuilder key = new StringBuilder();
+        for (ItemStackSnapshot[] row : layout) {
+            for (ItemStackSnapshot stack : row) {
+                key.append(stack.getItem()).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    private static CraftingData grid(ItemStackSnapshot[][] layout) {
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (ItemStackSnapshot[] row : layout) {
+            for (ItemStackSnapshot stack : row) {
+                if (!GridSignature.isEmpty(stack)) {
+                    list.add(stack);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    private static Optional<Recipe> scan(List<Recipe> recipes,
+            CraftingData grid) {
+        for (Recipe recipe : recipes) {
+            if (recipe.tryToApplyRecipe(grid).isPresent()) {
+                return Optional.of(recipe);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Test
+    public void lookupStaysFlatAsRecipesGrow() {
+        System.out.println("recipe lookup, " + GRIDS
+                + " grids of which half match");
+        for (int count : RECIPE_COUNTS) {
+            List<ItemStackSnapshot[][]> layouts = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            while (layouts.size() < count) {
+                ItemStackSnapshot[][] layout = randomLayout();
+                if (seen.add(key(layout))) {
+                    layouts.add(layout);
+                }
+            }
+            List<Recipe> recipes = new ArrayList<>();
+            for (ItemStackSnapshot[][] layout : layouts) {
+                recipes.add(new DefaultShapedRecipe(layout,
+                        this.stacks[0], false));
+            }
+            // no result cache, every lookup goes through the index
+            RecipeManager manager = new RecipeManager(0);
+            manager.addRecipes(recipes);
+
+            CraftingData[] grids = new CraftingData[GRIDS];
+            for (int i = 0; i < GRIDS; i++) {
+                grids[i] = grid(i % 2 == 0
+                        ? layouts.get(this.random.nextInt(count))
+                        : randomLayout());
+            }
+            for (CraftingData grid : grids) {
+                assertEquals(scan(recipes, grid), manager.findRecipe(grid));
+            }
+
+            BenchmarkTimer.report(count + " recipes, indexed",
+                    BenchmarkTimer.nanosPerOp(GRIDS,
+                            i -> manager.findRecipe(grids[i])),
+                    "ns/lookup");
+            int scans = Math.max(8, GRIDS * 10 / count);
+            BenchmarkTimer.report(count + " recipes, linear scan",
+                    BenchmarkTimer.nanosPerOp(Math.min(GRIDS, scans),
+                            i -> scan(recipes, grids[i])),
+                    "ns/lookup");
+        }
+    }
+
+}
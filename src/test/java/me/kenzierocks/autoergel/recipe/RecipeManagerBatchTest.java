@@ -0,0 +1,123 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class RecipeManagerBatchTest {
+
+    private static final ItemType[] ITEMS = { null, TestItems.STONE,
+            TestItems.STICK, TestItems.PLANK };
+
+    private static CraftingData randomGrid(Random random) {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[2][2];
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (ItemStackSnapshot[] row : layout) {
+            for (int c = 0; c < row.length; c++) {
+                ItemType item = ITEMS[random.nextInt(ITEMS.length)];
+                if (item != null) {
+                    row[c] = TestItems.stack(item, 1 + random.nextInt(4));
+                    list.add(row[c]);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    private static RecipeManager manager() {
+        RecipeManager manager = new RecipeManager(0);
+        ItemStackSnapshot stone = TestItems.stack(TestItems.STONE, 1);
+        ItemStackSnapshot stick = TestItems.stack(TestItems.STICK, 1);
+        ItemStackSnapshot none = ItemStackSnapshot.getNoneStack();
+        manager.addRecipes(ImmutableList.of(
+                new DefaultShapedRecipe(
+                        new ItemStackSnapshot[][] { { stone }, { stick } },
+                        TestItems.stack(TestItems.IRON, 1), false),
+                new DefaultShapedRecipe(
+                        new ItemStackSnapshot[][] { { stone, none },
+                                { none, stone } },
+                        TestItems.stack(TestItems.PLANK, 1), true),
+                new DefaultShapelessRecipe(ImmutableList.of(stick, stick),
+                        TestItems.stack(TestItems.PLANK, 2)),
+                new DefaultShapelessRecipe(ImmutableList.of(stone, stick),
+                        TestItems.stack(TestItems.STONE, 3))));
+        return manager;
+    }
+
+    private static List<CraftingData> grids(int count) {
+        Random random = new Random(11);
+        List<CraftingData> grids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            grids.add(randomGrid(random));
+        }
+        return grids;
+    }
+
+    @Test
+    public void batchAgreesWithSingleLookups() {
+        RecipeManager manager = manager();
+        List<CraftingData> grids = grids(2000);
+        List<Optional<ItemStackSnapshot>> results =
+                manager.produceResults(grids);
+        assertEquals(grids.size(), results.size());
+        for (int i = 0; i < grids.size(); i++) {
+            assertEquals(grids.get(i).toString(),
+                    manager.produceResult(grids.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void parallelBatchAgreesWithSerialBatch() {
+        RecipeManager manager = manager();
+        List<CraftingData> grids = grids(2000);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertEquals(manager.produceResults(grids),
+                    manager.produceResults(grids, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyBatch() {
+        assertEquals(ImmutableList.of(),
+                manager().produceResults(ImmutableList.of()));
+    }
+
+}
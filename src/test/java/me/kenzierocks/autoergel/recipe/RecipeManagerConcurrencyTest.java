@@ -0,0 +1,131 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+
+public class RecipeManagerConcurrencyTest {
+
+    private static final int READERS = 4;
+    private static final int CHURNS = 2000;
+
+    private static CraftingData grid(ItemStackSnapshot a, ItemStackSnapshot b) {
+        return new CraftingData(new ItemStackSnapshot[][] { { a, b } },
+                ImmutableList.of(a, b));
+    }
+
+    private static Recipe shapeless(ItemStackSnapshot result,
+            ItemStackSnapshot... ingredients) {
+        return new DefaultShapelessRecipe(ImmutableList.copyOf(ingredients),
+                result);
+    }
+
+    @Test
+    public void lookupsStayConsistentWhileRecipesChange() throws Exception {
+        ItemStackSnapshot planks = TestItems.stack(TestItems.PLANK, 4);
+        ItemStackSnapshot iron = TestItems.stack(TestItems.IRON, 2);
+        Recipe stable = shapeless(planks, TestItems.stack(TestItems.STICK, 1),
+                TestItems.stack(TestItems.STICK, 1));
+        Recipe churned = shapeless(iron, TestItems.stack(TestItems.IRON, 1),
+                TestItems.stack(TestItems.STONE, 1));
+        CraftingData stableGrid = grid(TestItems.stack(TestItems.STICK, 1),
+                TestItems.stack(TestItems.STICK, 1));
+        CraftingData churnedGrid = grid(TestItems.stack(TestItems.STONE, 1),
+                TestItems.stack(TestItems.IRON, 1));
+        CraftingData unknownGrid = grid(TestItems.stack(TestItems.PLANK, 1),
+                TestItems.stack(TestItems.STONE, 1));
+
+        RecipeManager manager = new RecipeManager();
+        manager.addRecipe(stable);
+
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < READERS; t++) {
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    while (!done.get()) {
+                        assertEquals(Optional.of(planks),
+                                manager.produceResult(stableGrid));
+                        Optional<ItemStackSnapshot> maybe =
+                                manager.produceResult(churnedGrid);
+                        if (maybe.isPresent()) {
+                            assertEquals(iron, maybe.get());
+                        }
+                        assertFalse(manager.produceResult(unknownGrid)
+                                .isPresent());
+                    }
+                    return null;
+                }));
+            }
+            Future<?> writer = pool.submit(() -> {
+                start.await();
+                try {
+                    for (int i = 0; i < CHURNS; i++) {
+                        manager.addRecipe(churned);
+                        assertEquals(Optional.of(iron),
+                                manager.produceResult(churnedGrid));
+                        assertTrue(manager.removeRecipe(churned));
+                        assertFalse(manager.produceResult(churnedGrid)
+                                .isPresent());
+                    }
+                } finally {
+                    done.set(true);
+                }
+                return null;
+            });
+            start.countDown();
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(ImmutableList.of(stable), manager.getRecipes());
+        assertFalse(manager.produceResult(churnedGrid).isPresent());
+    }
+
+}
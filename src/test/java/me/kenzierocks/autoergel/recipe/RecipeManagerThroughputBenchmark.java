@@ -0,0 +1,167 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+import me.kenzierocks.autoergel.util.BenchmarkTimer;
+
+/**
+ * Lookups per second on one shared {@link RecipeManager} from a growing
+ * number of threads.
+ */
+public class RecipeManagerThroughputBenchmark {
+
+    private static final int RECIPES = 10000;
+    private static final int GRIDS = 1024;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 2000;
+
+    private static final ItemType[] TYPES = { TestItems.STONE,
+            TestItems.STICK, TestItems.PLANK, TestItems.IRON };
+
+    private static ItemStackSnapshot[][] randomLayout(Random random) {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[3][3];
+        for (ItemStackSnapshot[] row : layout) {
+            for (int c = 0; c < row.length; c++) {
+                // damage values give many distinct recipes from four types
+                row[c] = random.nextInt(3) == 0
+                        ? ItemStackSnapshot.getNoneStack()
+                        : ItemStack.Factory.INSTANCE.createSnapshot(
+                                TYPES[random.nextInt(TYPES.length)], 1,
+                                random.nextInt(64));
+            }
+        }
+        return layout;
+    }
+
+    private static CraftingData grid(ItemStackSnapshot[][] layout) {
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (ItemStackSnapshot[] row : layout) {
+            for (ItemStackSnapshot stack : row) {
+                if (!GridSignature.isEmpty(stack)) {
+                    list.add(stack);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    /**
+     * @return The lookups done by all threads together, per second
+     */
+    private static double throughput(RecipeManager manager,
+            CraftingData[] grids, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * 31;
+                counts.add(pool.submit(() -> {
+                    start.await();
+                    long warmupEnd = System.nanoTime()
+                            + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+                    long end = warmupEnd
+                            + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+                    long lookups = 0;
+                    int found = 0;
+                    for (int i = first; System.nanoTime() < end; i++) {
+                        if (manager.findRecipe(grids[i % grids.length])
+                                .isPresent()) {
+                            found++;
+                        }
+                        if (System.nanoTime() >= warmupEnd) {
+                            lookups++;
+                        }
+                    }
+                    return found < 0 ? -1 : lookups;
+                }));
+            }
+            start.countDown();
+            long total = 0;
+            for (Future<Long> count : counts) {
+                total += count.get();
+            }
+            return total * 1000.0 / MEASURE_MILLIS;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void lookupsScaleWithThreads() throws Exception {
+        Random random = new Random(10);
+        List<Recipe> recipes = new ArrayList<>();
+        List<ItemStackSnapshot[][]> layouts = new ArrayList<>();
+        for (int i = 0; i < RECIPES; i++) {
+            ItemStackSnapshot[][] layout = randomLayout(random);
+            layouts.add(layout);
+            recipes.add(new DefaultShapedRecipe(layout,
+                    TestItems.stack(TestItems.IRON, 1), false));
+        }
+        CraftingData[] grids = new CraftingData[GRIDS];
+        for (int i = 0; i < GRIDS; i++) {
+            grids[i] = grid(i % 2 == 0
+                    ? layouts.get(random.nextInt(RECIPES))
+                    : randomLayout(random));
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("concurrent lookups, " + RECIPES + " recipes, "
+                + cores + " core(s)");
+        for (int cacheSize : new int[] { 0,
+                RecipeManager.DEFAULT_RESULT_CACHE_SIZE }) {
+            RecipeManager manager = new RecipeManager(cacheSize);
+            manager.addRecipes(recipes);
+            // even grids are copies of registered layouts
+            assertTrue(manager.findRecipe(grids[0]).isPresent());
+            for (int threads = 1; threads <= Math.max(4, cores * 2);
+                    threads *= 2) {
+                BenchmarkTimer.report(
+                        "cache " + cacheSize + ", " + threads + " thread(s)",
+                        throughput(manager, grids, threads) / 1000,
+                        "k lookups/s");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.util.BenchmarkTimer;
+
+/**
+ * The compiled matcher of {@link DefaultShapedRecipe} against the default
+ * {@link ShapedRecipe#tryToApplyRecipe(CraftingData)}, on full 3x3 grids.
+ */
+public class ShapedMatchBenchmark {
+
+    private static final int OPS = 10000;
+
+    private static final ItemStackSnapshot[][] LAYOUT = {
+            { stack(TestItems.STONE), stack(TestItems.STONE),
+                    stack(TestItems.STONE) },
+            { ItemStackSnapshot.getNoneStack(), stack(TestItems.STICK),
+                    ItemStackSnapshot.getNoneStack() },
+            { stack(TestItems.PLANK), stack(TestItems.STICK),
+                    stack(TestItems.PLANK) } };
+
+    private static ItemStackSnapshot stack(AutoErgel.ItemType item) {
+        return TestItems.stack(item, 1);
+    }
+
+    private static final DefaultShapedRecipe COMPILED =
+            new DefaultShapedRecipe(LAYOUT,
+                    TestItems.stack(TestItems.IRON, 1), false);
+
+    /**
+     * The same recipe, matched by the interface's cell-by-cell default.
+     */
+    private static final ShapedRecipe.SingleOutput DEFAULT =
+            new ShapedRecipe.SingleOutput() {
+
+                @Override
+                public int getRows() {
+                    return COMPILED.getRows();
+                }
+
+                @Override
+                public int getCols() {
+                    return COMPILED.getCols();
+                }
+
+                @Override
+                public ItemStackSnapshot getStackAt(int r, int c) {
+                    return COMPILED.getStackAt(r, c);
+                }
+
+                @Override
+                public ItemStackSnapshot getOutput() {
+                    return COMPILED.getOutput();
+                }
+
+            };
+
+    /**
+     * A fresh copy of the layout with the given cell replaced, so every
+     * lookup sees new snapshots as it would in play.
+     */
+    private static CraftingData grid(int changedRow, ItemStackSnapshot at) {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[3][3];
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                ItemStackSnapshot stack = LAYOUT[r][c];
+                if (r == changedRow && c == 2) {
+                    stack = at;
+                } else if (!GridSignature.isEmpty(stack)) {
+                    stack = TestItems.stack(stack.getItem(), 2);
+                }
+                layout[r][c] = stack;
+                if (!GridSignature.isEmpty(stack)) {
+                    list.add(stack);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    private static void compare(String name, CraftingData[] grids) {
+        IntFunction<?> compiled =
+                i -> COMPILED.tryToApplyRecipe(grids[i % grids.length]);
+        IntFunction<?> fallback =
+                i -> DEFAULT.tryToApplyRecipe(grids[i % grids.length]);
+        BenchmarkTimer.report(name + ", compiled",
+                BenchmarkTimer.nanosPerOp(OPS, compiled), "ns/match");
+        BenchmarkTimer.report(name + ", default method",
+                BenchmarkTimer.nanosPerOp(OPS, fallback), "ns/match");
+        BenchmarkTimer.report(name + ", compiled",
+                BenchmarkTimer.bytesPerOp(OPS, compiled), "B/match");
+        BenchmarkTimer.report(name + ", default method",
+                BenchmarkTimer.bytesPerOp(OPS, fallback), "B/match");
+    }
+
+    @Test
+    public void compiledAgainstDefault() {
+        CraftingData[] matching = new CraftingData[64];
+        CraftingData[] lastCellWrong = new CraftingData[64];
+        for (int i = 0; i < matching.length; i++) {
+            matching[i] = grid(2, stack(TestItems.PLANK));
+            lastCellWrong[i] = grid(2, stack(TestItems.IRON));
+        }
+        assertTrue(COMPILED.tryToApplyRecipe(matching[0]).isPresent());
+        assertEquals(COMPILED.tryToApplyRecipe(matching[0]),
+                DEFAULT.tryToApplyRecipe(matching[0]));
+        assertFalse(COMPILED.tryToApplyRecipe(lastCellWrong[0]).isPresent());
+        assertFalse(DEFAULT.tryToApplyRecipe(lastCellWrong[0]).isPresent());
+
+        System.out.println("shaped matching, 3x3 recipe on a 3x3 grid");
+        compare("match", matching);
+        compare("last cell differs", lastCellWrong);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class ShapedRecipeTest {
+
+    private static final ItemStackSnapshot NONE =
+            ItemStackSnapshot.getNoneStack();
+    private static final ItemStackSnapshot STONE =
+            TestItems.stack(TestItems.STONE, 1);
+    private static final ItemStackSnapshot STICK =
+            TestItems.stack(TestItems.STICK, 1);
+
+    /**
+     * An L of two stones over one stick, which differs from its mirror image.
+     */
+    private static DefaultShapedRecipe hook(boolean mirrored) {
+        return new DefaultShapedRecipe(new ItemStackSnapshot[][] {
+                { STONE, STONE }, { STICK, NONE } },
+                TestItems.stack(TestItems.IRON, 1), mirrored);
+    }
+
+    /**
+     * A 3x3 grid holding {@code shape} at row {@code r}, column {@code c},
+     * two items per occupied cell.
+     */
+    private static CraftingData place(ItemType[][] shape, int r, int c) {
+        ItemStackSnapshot[][] layout = new ItemStackSnapshot[3][3];
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                int sr = y - r;
+                int sc = x - c;
+                ItemType item = sr >= 0 && sr < shape.length && sc >= 0
+                        && sc < shape[sr].length ? shape[sr][sc] : null;
+                if (item != null) {
+                    layout[y][x] = TestItems.stack(item, 2);
+                    list.add(layout[y][x]);
+                }
+            }
+        }
+        return new CraftingData(layout, list.build());
+    }
+
+    private static final ItemType[][] HOOK = {
+            { TestItems.STONE, TestItems.STONE }, { TestItems.STICK, null } };
+    private static final ItemType[][] MIRRORED_HOOK = {
+            { TestItems.STONE, TestItems.STONE }, { null, TestItems.STICK } };
+
+    @Test
+    public void matchesAtEveryOffset() {
+        DefaultShapedRecipe recipe = hook(false);
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 2; c++) {
+                CraftingData grid = place(HOOK, r, c);
+                assertTrue(grid.toString(),
+                        recipe.tryToApplyRecipe(grid).isPresent());
+                assertEquals(2, recipe.maxApplications(grid));
+            }
+        }
+    }
+
+    @Test
+    public void appliesAtTheOffsetItMatched() {
+        CraftingData grid = place(HOOK, 1, 1);
+        CraftingData left = hook(false).applyN(grid, 1,
+                stack -> ItemStackSnapshot.getNoneStack());
+        assertEquals(1, left.getStackAt(1, 1).getQuantity());
+        assertEquals(1, left.getStackAt(1, 2).getQuantity());
+        assertEquals(1, left.getStackAt(2, 1).getQuantity());
+    }
+
+    @Test
+    public void strayItemsPreventTheMatch() {
+        CraftingData grid = place(HOOK, 0, 0).withStackAt(2, 2, STICK);
+        assertFalse(hook(false).tryToApplyRecipe(grid).isPresent());
+    }
+
+    @Test
+    public void mirrorImageOnlyMatchesMirroredRecipes() {
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 2; c++) {
+                CraftingData grid = place(MIRRORED_HOOK, r, c);
+                assertFalse(hook(false).tryToApplyRecipe(grid).isPresent());
+                assertTrue(hook(true).tryToApplyRecipe(grid).isPresent());
+                assertTrue(hook(true)
+                        .tryToApplyRecipe(place(HOOK, r, c)).isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void mirrorImagesShareOneIndexBucket() {
+        assertEquals(GridSignature.of(place(HOOK, 0, 0)),
+                GridSignature.of(place(MIRRORED_HOOK, 1, 1)));
+        RecipeManager manager = new RecipeManager();
+        DefaultShapedRecipe recipe = hook(true);
+        manager.addRecipe(recipe);
+        assertEquals(recipe, manager.findRecipe(place(MIRRORED_HOOK, 1, 0))
+                .orElse(null));
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class ShapelessRecipeTest {
+
+    private static final Function<ItemStackSnapshot, ItemStackSnapshot> USED_UP =
+            stack -> ItemStackSnapshot.getNoneStack();
+
+    /**
+     * Two sticks and a stone, asking for two stones per application.
+     */
+    private static final DefaultShapelessRecipe RECIPE = DefaultShapelessRecipe.Builder
+            .start(TestItems.itemStack(TestItems.IRON, 1))
+            .ingredient(TestItems.stack(TestItems.STICK, 1))
+            .ingredient(TestItems.stack(TestItems.STONE, 2))
+            .ingredient(TestItems.stack(TestItems.STICK, 1)).build();
+
+    /**
+     * A row of cells holding {@code items}, {@code null} for an empty cell.
+     */
+    private static CraftingData row(int quantity, ItemType... items) {
+        ItemStackSnapshot[] row = new ItemStackSnapshot[items.length];
+        ImmutableList.Builder<ItemStackSnapshot> list = ImmutableList.builder();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != null) {
+                row[i] = TestItems.stack(items[i], quantity);
+                list.add(row[i]);
+            }
+        }
+        return new CraftingData(new ItemStackSnapshot[][] { row },
+                list.build());
+    }
+
+    @Test
+    public void ingredientsAreGroupedByKind() {
+        assertEquals(ImmutableList.of(TestItems.STICK, TestItems.STICK,
+                TestItems.STONE),
+                RECIPE.getIngredients().stream()
+                        .map(ItemStackSnapshot::getItem)
+                        .collect(Collectors.toList()));
+        assertEquals(2, RECIPE.getRequiredQuantity(2));
+    }
+
+    @Test
+    public void matchesInAnyOrderAndPlace() {
+        assertTrue(RECIPE.tryToApplyRecipe(row(4, TestItems.STONE, null,
+                TestItems.STICK, TestItems.STICK)).isPresent());
+        assertTrue(RECIPE.tryToApplyRecipe(row(4, TestItems.STICK,
+                TestItems.STONE, TestItems.STICK, null)).isPresent());
+    }
+
+    @Test
+    public void needsExactlyTheIngredients() {
+        assertFalse(RECIPE.tryToApplyRecipe(
+                row(4, TestItems.STONE, TestItems.STICK)).isPresent());
+        assertFalse(RECIPE.tryToApplyRecipe(row(4, TestItems.STONE,
+                TestItems.STICK, TestItems.STICK, TestItems.STICK))
+                .isPresent());
+        assertFalse(RECIPE.tryToApplyRecipe(row(4, TestItems.STONE,
+                TestItems.STICK, TestItems.STICK, TestItems.PLANK))
+                .isPresent());
+    }
+
+    @Test
+    public void countsApplicationsPerKind() {
+        CraftingData grid = row(5, TestItems.STICK, TestItems.STONE,
+                TestItems.STICK);
+        assertEquals(2, RECIPE.maxApplications(grid));
+        CraftingData left = RECIPE.applyN(grid, 2, USED_UP);
+        assertEquals(3, left.getStackAt(0, 0).getQuantity());
+        assertEquals(1, left.getStackAt(0, 1).getQuantity());
+        assertEquals(3, left.getStackAt(0, 2).getQuantity());
+        assertEquals(0, RECIPE.maxApplications(row(1, TestItems.STICK,
+                TestItems.STONE, TestItems.STICK)));
+    }
+
+    @Test
+    public void defaultsAgreeWithClosedForm() {
+        Recipe stepwise = new Recipe() {
+
+            @Override
+            public Optional<ItemStackSnapshot>
+                    tryToApplyRecipe(CraftingData data) {
+                return RECIPE.tryToApplyRecipe(data);
+            }
+
+            @Override
+            public CraftingData removeItemsForOneApply(CraftingData data,
+                    Function<ItemStackSnapshot, ItemStackSnapshot> getContainerItem) {
+                return RECIPE.applyN(data, 1, getContainerItem);
+            }
+
+        };
+        for (int quantity = 1; quantity < 8; quantity++) {
+            CraftingData grid = row(quantity, TestItems.STICK,
+                    TestItems.STONE, TestItems.STICK);
+            int max = RECIPE.maxApplications(grid);
+            assertEquals(max, stepwise.maxApplications(grid));
+            assertEquals(RECIPE.applyN(grid, max, USED_UP),
+                    stepwise.applyN(grid, max, USED_UP));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void kindsNeedOneQuantity() {
+        new DefaultShapelessRecipe(
+                ImmutableList.of(TestItems.stack(TestItems.STONE, 1),
+                        TestItems.stack(TestItems.STONE, 2)),
+                TestItems.stack(TestItems.IRON, 1));
+    }
+
+    @Test
+    public void ingredientsKeyIgnoresOrderAndQuantity() {
+        long key = GridSignature.ingredientsKey(ImmutableList.of(
+                TestItems.stack(TestItems.STICK, 1),
+                TestItems.stack(TestItems.STONE, 1),
+                TestItems.stack(TestItems.STICK, 1)));
+        assertEquals(key, GridSignature.ingredientsKey(ImmutableList.of(
+                TestItems.stack(TestItems.STONE, 9),
+                TestItems.stack(TestItems.STICK, 3),
+                TestItems.stack(TestItems.STICK, 1))));
+        assertNotEquals(key, GridSignature.ingredientsKey(ImmutableList.of(
+                TestItems.stack(TestItems.STONE, 1),
+                TestItems.stack(TestItems.STICK, 1))));
+    }
+
+    @Test
+    public void managerFindsShapelessRecipesThroughTheIndex() {
+        RecipeManager manager = new RecipeManager();
+        DefaultShapelessRecipe planks = new DefaultShapelessRecipe(
+                ImmutableList.of(TestItems.stack(TestItems.STICK, 1),
+                        TestItems.stack(TestItems.STICK, 1)),
+                TestItems.stack(TestItems.PLANK, 1));
+        manager.addRecipe(planks);
+        manager.addRecipe(RECIPE);
+        assertEquals(Optional.of(RECIPE), manager.findRecipe(row(2,
+                TestItems.STONE, TestItems.STICK, TestItems.STICK)));
+        assertEquals(Optional.of(planks), manager
+                .findRecipe(row(2, null, TestItems.STICK, TestItems.STICK)));
+        assertFalse(manager.findRecipe(row(2, TestItems.STICK)).isPresent());
+    }
+
+}
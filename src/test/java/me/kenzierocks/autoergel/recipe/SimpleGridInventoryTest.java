@@ -0,0 +1,113 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+
+public class SimpleGridInventoryTest {
+
+    private final SimpleGridInventory inventory = new SimpleGridInventory(3, 2);
+
+    private void put(int x, int y, int quantity) {
+        this.inventory.setSlot(x, y,
+                TestItems.itemStack(TestItems.STONE, quantity));
+    }
+
+    @Test
+    public void setSlotCopiesAndIndexes() {
+        ItemStack stack = TestItems.itemStack(TestItems.STONE, 4);
+        this.inventory.setSlot(2, 1, stack);
+        assertNotSame(stack, this.inventory.getSlot(2, 1));
+        assertEquals(4, this.inventory.getSlot(2, 1).getQuantity());
+        put(0, 0, 3);
+        assertEquals(7, this.inventory.getQuantity(TestItems.STONE));
+        assertEquals(0, this.inventory.getQuantity(TestItems.STICK));
+    }
+
+    @Test
+    public void emptyStacksAreNotStored() {
+        put(1, 1, 0);
+        this.inventory.setSlot(0, 1,
+                TestItems.itemStack(TestItems.NONE, 1));
+        assertNull(this.inventory.getSlot(1, 1));
+        assertNull(this.inventory.getSlot(0, 1));
+        assertEquals(0, this.inventory.getQuantity(TestItems.NONE));
+    }
+
+    @Test
+    public void replacedSlotsLeaveTheIndex() {
+        put(1, 0, 5);
+        this.inventory.setSlot(1, 0, TestItems.itemStack(TestItems.STICK, 2));
+        assertEquals(0, this.inventory.getQuantity(TestItems.STONE));
+        assertEquals(2, this.inventory.getQuantity(TestItems.STICK));
+        this.inventory.setSlot(1, 0, null);
+        assertEquals(0, this.inventory.getQuantity(TestItems.STICK));
+    }
+
+    @Test
+    public void removeStackTakesSlotsInOrder() {
+        put(2, 1, 5);
+        put(1, 0, 3);
+        put(0, 1, 4);
+        ItemStack leftovers = this.inventory
+                .removeStack(TestItems.itemStack(TestItems.STONE, 6));
+        assertEquals(0, leftovers.getQuantity());
+        assertNull(this.inventory.getSlot(1, 0));
+        assertEquals(1, this.inventory.getSlot(0, 1).getQuantity());
+        assertEquals(5, this.inventory.getSlot(2, 1).getQuantity());
+        assertEquals(6, this.inventory.getQuantity(TestItems.STONE));
+    }
+
+    @Test
+    public void removeStacksReportsLeftoversInOrder() {
+        put(0, 0, 2);
+        put(1, 0, 2);
+        this.inventory.setSlot(2, 0, TestItems.itemStack(TestItems.STICK, 1));
+        List<ItemStack> leftovers = this.inventory.removeStacks(
+                ImmutableList.of(TestItems.itemStack(TestItems.STONE, 3),
+                        TestItems.itemStack(TestItems.PLANK, 2),
+                        TestItems.itemStack(TestItems.STONE, 3),
+                        TestItems.itemStack(TestItems.STICK, 1)));
+        assertEquals(4, leftovers.size());
+        assertEquals(0, leftovers.get(0).getQuantity());
+        assertEquals(2, leftovers.get(1).getQuantity());
+        assertEquals(TestItems.PLANK, leftovers.get(1).getItem());
+        assertEquals(2, leftovers.get(2).getQuantity());
+        assertEquals(0, leftovers.get(3).getQuantity());
+        assertEquals(0, this.inventory.getQuantity(TestItems.STONE));
+        assertNull(this.inventory.getSlot(2, 0));
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+
+public class SnapshotInterningTest {
+
+    @Test
+    public void noneStackIsShared() {
+        ItemStackSnapshot none = ItemStackSnapshot.getNoneStack();
+        assertSame(none, ItemStackSnapshot.getNoneStack());
+        assertSame(ItemType.NONE, none.getItem());
+        assertSame(none, ItemStackSnapshot.interned(ItemType.NONE, 0, 0));
+        assertTrue(GridSignature.isEmpty(none));
+    }
+
+    @Test
+    public void equalPlainStacksShareOneSnapshot() {
+        ItemStackSnapshot a = ItemStackSnapshot.interned(TestItems.STONE, 3, 0);
+        assertSame(a, ItemStackSnapshot.interned(TestItems.STONE, 3, 0));
+        assertEquals(3, a.getQuantity());
+        assertNotSame(a, ItemStackSnapshot.interned(TestItems.STONE, 4, 0));
+        assertNotSame(a, ItemStackSnapshot.interned(TestItems.STONE, 3, 1));
+        assertNotSame(a, ItemStackSnapshot.interned(TestItems.STICK, 3, 0));
+    }
+
+    @Test
+    public void internReplacesPlainStacksOnly() {
+        ItemStackSnapshot plain = TestItems.stack(TestItems.PLANK, 2);
+        ItemStackSnapshot pooled = ItemStackSnapshot.intern(plain);
+        assertEquals(plain, pooled);
+        assertSame(pooled, ItemStackSnapshot.intern(
+                TestItems.stack(TestItems.PLANK, 2)));
+        ItemStackSnapshot custom = TestItems.stack(TestItems.PLANK, 2,
+                ImmutableList.of(TestItems.manipulator()));
+        assertSame(custom, ItemStackSnapshot.intern(custom));
+    }
+
+    @Test
+    public void gridSnapshotsOfPlainSlotsArePooled() {
+        assertSame(ItemStackSnapshot.interned(TestItems.IRON, 5, 0),
+                CraftingData.snapshotOf(
+                        TestItems.itemStack(TestItems.IRON, 5)));
+        assertSame(ItemStackSnapshot.getNoneStack(),
+                CraftingData.snapshotOf(null));
+    }
+
+}
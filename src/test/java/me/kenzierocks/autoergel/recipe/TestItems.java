@@ -0,0 +1,573 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.recipe;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import me.kenzierocks.autoergel.osadata.data.DataContainer;
+import me.kenzierocks.autoergel.osadata.data.Property;
+import me.kenzierocks.autoergel.osadata.data.key.Key;
+import me.kenzierocks.autoergel.osadata.data.manipulator.ImmutableDataManipulator;
+import me.kenzierocks.autoergel.osadata.data.merge.MergeFunction;
+import me.kenzierocks.autoergel.osadata.data.value.BaseValue;
+import me.kenzierocks.autoergel.osadata.data.value.immutable.ImmutableValue;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStack;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemStackSnapshot;
+import me.kenzierocks.autoergel.recipe.AutoErgel.ItemType;
+import me.kenzierocks.autoergel.util.ServiceProviders;
+
+/**
+ * Minimal item types and snapshots for tests, registered through
+ * {@code META-INF/services}. Snapshots only carry data when given containers
+ * to report.
+ */
+public final class TestItems {
+
+    public static final ItemType NONE = ItemType.NONE;
+    public static final ItemType STONE = type("stone");
+    public static final ItemType STICK = type("stick");
+    public static final ItemType PLANK = type("plank");
+    public static final ItemType IRON = type("iron");
+
+    private static ItemType type(String id) {
+        return ItemType.Provider.INSTANCE.getById(id).get();
+    }
+
+    /**
+     * A type the provider doesn't know, for when the provided ones are too
+     * few. It has no numeric id.
+     */
+    public static ItemType unregisteredType(String id) {
+        return new TestItemType(id);
+    }
+
+    public static ItemStackSnapshot stack(ItemType item, int quantity) {
+        return new TestSnapshot(item, quantity, 0);
+    }
+
+    /**
+     * A snapshot reporting {@code containers} as its data, which is only
+     * compared, never read.
+     */
+    public static ItemStackSnapshot stack(ItemType item, int quantity,
+            Collection<ImmutableDataManipulator<?, ?>> containers) {
+        return new TestSnapshot(item, quantity, 0, containers);
+    }
+
+    /**
+     * A live stack answering only what matching and inventories ask of it.
+     * Its snapshots are of another class than the other test snapshots, as in
+     * most implementations.
+     */
+    public static ItemStack itemStack(ItemType item, int quantity,
+            Collection<ImmutableDataManipulator<?, ?>> containers) {
+        return new LiveStack(item, quantity, containers).proxy();
+    }
+
+    public static ItemStack itemStack(ItemType item, int quantity) {
+        return itemStack(item, quantity, ImmutableList.of());
+    }
+
+    /**
+     * A snapshot of another class than the snapshots of
+     * {@link #itemStack live stacks}, where neither class extends the other.
+     */
+    public static ItemStackSnapshot foreignStack(ItemType item, int quantity) {
+        return new ForeignSnapshot(item, quantity);
+    }
+
+    /**
+     * A data manipulator that is only equal to itself.
+     */
+    public static ImmutableDataManipulator<?, ?> manipulator() {
+        return (ImmutableDataManipulator<?, ?>) Proxy.newProxyInstance(
+                TestItems.class.getClassLoader(),
+                new Class<?>[] { ImmutableDataManipulator.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "manipulator@" + Integer.toHexString(
+                                    System.identityHashCode(proxy));
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.toString());
+                    }
+                });
+    }
+
+    public static final class TypesProvider
+            extends ServiceProviders.ItemTypeProviderProvider {
+
+        public TypesProvider() {
+            super(new Types());
+        }
+
+    }
+
+    private static final class Types implements ItemType.Provider {
+
+        // creating a test type initializes ItemType, which asks the
+        // provider for NONE, so no type can be created while the provider
+        // is being loaded
+        private final Supplier<Map<String, ItemType>> types =
+                Suppliers.memoize(() -> {
+                    ImmutableMap.Builder<String, ItemType> types =
+                            ImmutableMap.builder();
+                    types.put("none", getNoneType());
+                    for (String id : ImmutableList.of("stone", "stick",
+                            "plank", "iron")) {
+                        types.put(id, new TestItemType(id));
+                    }
+                    return types.build();
+                });
+        private volatile ItemType none;
+
+        @Override
+        public Set<ItemType> getProvidedItemTypes() {
+            return ImmutableSet.copyOf(this.types.get().values());
+        }
+
+        @Override
+        public Optional<ItemType> getById(String id) {
+            return Optional.ofNullable(this.types.get().get(id));
+        }
+
+        @Override
+        public ItemType getNoneType() {
+            if (this.none == null) {
+                // may initialize ItemType, which asks for NONE in turn
+                ItemType none = new TestItemType("none");
+                if (this.none == null) {
+                    this.none = none;
+                }
+            }
+            return this.none;
+        }
+
+    }
+
+    public static final class FactoryProvider
+            extends ServiceProviders.ItemStackFactoryProvider {
+
+        public FactoryProvider() {
+            super(new ItemStack.Factory() {
+
+                @Override
+                public ItemStack create(ItemType item, int quantity) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public ItemStack create(ItemType item, int quantity,
+                        int damage) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public ItemStack create(ItemType item, int quantity,
+                        int damage, DataContainer data) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public ItemStackSnapshot createSnapshot(ItemType item,
+                        int quantity) {
+                    return new TestSnapshot(item, quantity, 0);
+                }
+
+                @Override
+                public ItemStackSnapshot createSnapshot(ItemType item,
+                        int quantity, int damage) {
+                    return new TestSnapshot(item, quantity, damage);
+                }
+
+                @Override
+                public ItemStackSnapshot createSnapshot(ItemType item,
+                        int quantity, int damage, DataContainer data) {
+                    return new TestSnapshot(item, quantity, damage);
+                }
+
+            });
+        }
+
+    }
+
+    private static final class TestItemType implements ItemType {
+
+        private final String id;
+
+        TestItemType(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public String toString() {
+            return this.id;
+        }
+
+    }
+
+    private static final class LiveStack implements InvocationHandler {
+
+        private final ItemType item;
+        private int quantity;
+        private int damage;
+        private final Collection<ImmutableDataManipulator<?, ?>> containers;
+
+        LiveStack(ItemType item, int quantity,
+                Collection<ImmutableDataManipulator<?, ?>> containers) {
+            this.item = item;
+            this.quantity = quantity;
+            this.containers = containers;
+        }
+
+        ItemStack proxy() {
+            return (ItemStack) Proxy.newProxyInstance(
+                    TestItems.class.getClassLoader(),
+                    new Class<?>[] { ItemStack.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getItem":
+                    return this.item;
+                case "getQuantity":
+                    return this.quantity;
+                case "setQuantity":
+                    this.quantity = (Integer) args[0];
+                    return null;
+                case "changeQuantity":
+                    this.quantity += (Integer) args[0];
+                    return null;
+                case "getDamage":
+                    return this.damage;
+                case "setDamage":
+                    this.damage = (Integer) args[0];
+                    return null;
+                case "getMaxDamage":
+                    return 0;
+                case "getContainers":
+                    return this.containers;
+                case "hasCustomData":
+                    return !this.containers.isEmpty();
+                case "getDataHash":
+                    return this.containers.hashCode();
+                case "createSnapshot":
+                    return new LiveSnapshot(this.item, this.quantity,
+                            this.damage, this.containers);
+                case "copy": {
+                    LiveStack copy = new LiveStack(this.item, this.quantity,
+                            this.containers);
+                    copy.damage = this.damage;
+                    return copy.proxy();
+                }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return this.quantity + "x" + this.item;
+                default:
+                    throw new UnsupportedOperationException(
+                            method.toString());
+            }
+        }
+
+    }
+
+    private static final class LiveSnapshot extends TestSnapshot {
+
+        LiveSnapshot(ItemType item, int quantity, int damage,
+                Collection<ImmutableDataManipulator<?, ?>> containers) {
+            super(item, quantity, damage, containers);
+        }
+
+    }
+
+    private static final class ForeignSnapshot extends TestSnapshot {
+
+        ForeignSnapshot(ItemType item, int quantity) {
+            super(item, quantity, 0);
+        }
+
+    }
+
+    private static class TestSnapshot implements ItemStackSnapshot {
+
+        private final ItemType item;
+        private final int quantity;
+        private final int damage;
+        private final Collection<ImmutableDataManipulator<?, ?>> containers;
+        private final int dataHash;
+
+        TestSnapshot(ItemType item, int quantity, int damage) {
+            this(item, quantity, damage, ImmutableList.of());
+        }
+
+        TestSnapshot(ItemType item, int quantity, int damage,
+                Collection<ImmutableDataManipulator<?, ?>> containers) {
+            this.item = item;
+            this.quantity = quantity;
+            this.damage = damage;
+            this.containers = containers;
+            this.dataHash = containers.hashCode();
+        }
+
+        @Override
+        public boolean hasCustomData() {
+            return !this.containers.isEmpty();
+        }
+
+        @Override
+        public int getDataHash() {
+            return this.dataHash;
+        }
+
+        @Override
+        public ItemType getItem() {
+            return this.item;
+        }
+
+        @Override
+        public int getQuantity() {
+            return this.quantity;
+        }
+
+        @Override
+        public int getDamage() {
+            return this.damage;
+        }
+
+        @Override
+        public int getMaxDamage() {
+            return 0;
+        }
+
+        @Override
+        public Collection<ImmutableDataManipulator<?, ?>> getContainers() {
+            return this.containers;
+        }
+
+        @Override
+        public List<ImmutableDataManipulator<?, ?>> getManipulators() {
+            return ImmutableList.copyOf(this.containers);
+        }
+
+        @Override
+        public ItemStackSnapshot withItem(ItemType item) {
+            return new TestSnapshot(item, this.quantity, this.damage,
+                    this.containers);
+        }
+
+        @Override
+        public ItemStackSnapshot withQuantity(int quantity) {
+            return new TestSnapshot(this.item, quantity, this.damage,
+                    this.containers);
+        }
+
+        @Override
+        public ItemStackSnapshot withQuantityChange(int amount) {
+            return withQuantity(this.quantity + amount);
+        }
+
+        @Override
+        public ItemStackSnapshot withDamage(int damage) {
+            return new TestSnapshot(this.item, this.quantity, damage,
+                    this.containers);
+        }
+
+        @Override
+        public ItemStackSnapshot withDamageChange(int amount) {
+            return withDamage(this.damage + amount);
+        }
+
+        @Override
+        public ItemStackSnapshot copy() {
+            return this;
+        }
+
+        @Override
+        public int getContentVersion() {
+            return 1;
+        }
+
+        @Override
+        public DataContainer toContainer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Property<?, ?>> Optional<T>
+                getProperty(Class<T> propertyClass) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Collection<Property<?, ?>> getApplicableProperties() {
+            return ImmutableList.of();
+        }
+
+        @Override
+        public <T extends ImmutableDataManipulator<?, ?>> Optional<T>
+                get(Class<T> containerClass) {
+            return Optional.empty();
+        }
+
+        @Override
+        public <T extends ImmutableDataManipulator<?, ?>> Optional<T>
+                getOrCreate(Class<T> containerClass) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean supports(
+                Class<? extends ImmutableDataManipulator<?, ?>> containerClass) {
+            return false;
+        }
+
+        @Override
+        public <E> Optional<ItemStackSnapshot> transform(
+                Key<? extends BaseValue<E>> key, Function<E, E> function) {
+            return Optional.empty();
+        }
+
+        @Override
+        public <E> Optional<ItemStackSnapshot>
+                with(Key<? extends BaseValue<E>> key, E value) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<ItemStackSnapshot> with(BaseValue<?> value) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<ItemStackSnapshot>
+                with(ImmutableDataManipulator<?, ?> valueContainer) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<ItemStackSnapshot> with(
+                Iterable<ImmutableDataManipulator<?, ?>> valueContainers) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<ItemStackSnapshot> without(
+                Class<? extends ImmutableDataManipulator<?, ?>> containerClass) {
+            return Optional.empty();
+        }
+
+        @Override
+        public ItemStackSnapshot merge(ItemStackSnapshot that) {
+            return this;
+        }
+
+        @Override
+        public ItemStackSnapshot merge(ItemStackSnapshot that,
+                MergeFunction function) {
+            return this;
+        }
+
+        @Override
+        public <E> Optional<E> get(Key<? extends BaseValue<E>> key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public <E, V extends BaseValue<E>> Optional<V> getValue(Key<V> key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean supports(Key<?> key) {
+            return false;
+        }
+
+        @Override
+        public Set<Key<?>> getKeys() {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public Set<ImmutableValue<?>> getValues() {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TestSnapshot)) {
+                return false;
+            }
+            TestSnapshot other = (TestSnapshot) obj;
+            return this.item.equals(other.item)
+                    && this.quantity == other.quantity
+                    && this.damage == other.damage
+                    && this.containers.equals(other.containers);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.item.hashCode() * 31 + this.quantity) * 31
+                    + this.damage;
+        }
+
+        @Override
+        public String toString() {
+            return this.quantity + "x" + this.item;
+        }
+
+    }
+
+    private TestItems() {
+    }
+
+}
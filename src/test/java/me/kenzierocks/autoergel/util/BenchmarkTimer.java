@@ -0,0 +1,115 @@
+/*
+ * This file is part of Autoergel, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) kenzierocks (Kenzie Togami) <http://kenzierocks.me>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.kenzierocks.autoergel.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+/**
+ * Timing for the {@code *Benchmark} classes, which only run through
+ * {@code gradle benchmark}. Every measurement is warmed up for a second, then
+ * repeated until its best round stops improving, and reports that best
+ * round. That is not a substitute for a proper harness, but it is stable
+ * enough to compare two implementations on one machine.
+ */
+public final class BenchmarkTimer {
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long STABLE_NANOS = 1_000_000_000L;
+    private static final long MAX_NANOS = 20_000_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+
+    /**
+     * Calls {@code op} with {@code 0} to {@code ops - 1} in every round.
+     *
+     * @return The best time per call, in nanoseconds
+     */
+    public static double nanosPerOp(int ops, IntFunction<?> op) {
+        long begin = System.nanoTime();
+        warmUp(ops, op);
+        // on few cores the JIT competes with the benchmark, so keep going
+        // until the best round has not improved by 2% for a while
+        long best = Long.MAX_VALUE;
+        long improved = System.nanoTime();
+        while (true) {
+            long start = System.nanoTime();
+            run(ops, op);
+            long end = System.nanoTime();
+            if (end - start < best - best / 50) {
+                improved = end;
+            }
+            best = Math.min(best, end - start);
+            if (end - improved > STABLE_NANOS || end - begin > MAX_NANOS) {
+                break;
+            }
+        }
+        return (double) best / ops;
+    }
+
+    /**
+     * Calls {@code op} with {@code 0} to {@code ops - 1} once warmed up.
+     *
+     * @return The bytes allocated per call by this thread
+     */
+    public static double bytesPerOp(int ops, IntFunction<?> op) {
+        warmUp(ops, op);
+        long thread = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        run(ops, op);
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+        return (double) allocated / ops;
+    }
+
+    private static void warmUp(int ops, IntFunction<?> op) {
+        long begin = System.nanoTime();
+        while (System.nanoTime() - begin < WARMUP_NANOS) {
+            run(ops, op);
+        }
+    }
+
+    private static void run(int ops, IntFunction<?> op) {
+        int nulls = 0;
+        for (int i = 0; i < ops; i++) {
+            // using the result keeps the call from being optimized away
+            if (op.apply(i) == null) {
+                nulls++;
+            }
+        }
+        if (nulls < 0) {
+            throw new AssertionError();
+        }
+    }
+
+    public static void report(String name, double value, String unit) {
+        System.out.println(String.format("%-48s %12.1f %s", name, value, unit));
+    }
+
+    private BenchmarkTimer() {
+    }
+
+}